@@ -3,8 +3,6 @@ package com.example.privacyscope;
 import android.app.Dialog;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.ConnectivityManager;
@@ -60,10 +58,13 @@ public class AlternativeActivity extends AppCompatActivity {
 
 
     // --- Data & Threading ---
-    private final List<AppInfo> allApps = new ArrayList<>();
+    // The snapshot's immutable list, so open dialogs never see it change under them
+    private List<AppSummary> allApps = Collections.emptyList();
     private final ExecutorService executor = Executors.newCachedThreadPool();
     private final Handler handler = new Handler(Looper.getMainLooper());
     private String lastSelectedAppName;
+    private ScanRepository scanRepository;
+    private final ScanRepository.Listener scanListener = this::onAppsLoaded;
 
     private static class AlternativeResult {
         final List<AlternativeApp> alternatives;
@@ -90,6 +91,7 @@ public class AlternativeActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         executor.shutdown();
+        scanRepository.removeListener(scanListener);
     }
 
     private void initializeViews() {
@@ -127,21 +129,15 @@ public class AlternativeActivity extends AppCompatActivity {
     private void loadAllApps() {
         loadingIndicator.setVisibility(View.VISIBLE);
         selectAppButton.setEnabled(false);
-        executor.execute(() -> {
-            PackageManager pm = getPackageManager();
-            List<PackageInfo> packages = pm.getInstalledPackages(0);
-            allApps.clear();
-            for (PackageInfo packageInfo : packages) {
-                if ((packageInfo.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    allApps.add(new AppInfo(packageInfo, pm));
-                }
-            }
-            Collections.sort(allApps, (a1, a2) -> a1.getAppName().compareToIgnoreCase(a2.getAppName()));
-            handler.post(() -> {
-                loadingIndicator.setVisibility(View.GONE);
-                selectAppButton.setEnabled(true);
-            });
-        });
+        scanRepository = ScanRepository.getInstance(this);
+        scanRepository.addListener(scanListener);
+        scanRepository.ensureFresh();
+    }
+
+    private void onAppsLoaded(ScanSnapshot snapshot) {
+        allApps = snapshot.getAppsByName();
+        loadingIndicator.setVisibility(View.GONE);
+        selectAppButton.setEnabled(true);
     }
 
     private void showAppSelectionDialog() {
@@ -153,14 +149,15 @@ public class AlternativeActivity extends AppCompatActivity {
         }
         RecyclerView recyclerView = dialog.findViewById(R.id.dialogRecyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        AppDialogAdapter dialogAdapter = new AppDialogAdapter(allApps, app -> {
+        AppDialogAdapter dialogAdapter = new AppDialogAdapter(app -> {
             selectedAppName.setText(app.getAppName());
-            selectedAppIcon.setImageDrawable(app.getIcon());
+            IconLoader.getInstance(this).load(selectedAppIcon, app.getPackageName());
             selectedAppIcon.setImageTintList(null);
             lastSelectedAppName = app.getAppName();
             findAndDisplayAlternatives(app.getAppName());
             dialog.dismiss();
         });
+        dialogAdapter.submitApps(allApps);
         recyclerView.setAdapter(dialogAdapter);
         dialog.show();
     }
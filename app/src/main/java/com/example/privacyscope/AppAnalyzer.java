@@ -0,0 +1,159 @@
+package com.example.privacyscope;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds {@link AppSummary} objects for a batch of packages, either on the calling thread or
+ * spread over a fixed pool with one worker per core. Results always come back in input order,
+ * so the parallel and serial modes produce identical lists. Callers that want to show results
+ * early can pass a {@link BatchSink}, which receives small batches as soon as they finish.
+ */
+final class AppAnalyzer {
+
+    private static final String TAG = "PrivacyScope";
+    static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+    static final int STREAM_BATCH_SIZE = 8;
+
+    /** Analyzes one input item; returns null to leave it out of the result. */
+    interface Analysis<T> {
+        AppSummary analyze(T item) throws Exception;
+    }
+
+    /** Receives finished apps in completion order, on an analysis thread. */
+    interface BatchSink {
+        void onBatch(List<AppSummary> batch);
+    }
+
+    /**
+     * Timing of one batch. {@code workMs} is the per-app time summed over all threads; it is not a
+     * serial baseline, since per-app times grow when workers compete for cores and IPC.
+     */
+    static final class Stats {
+        final boolean parallel;
+        final int threads;
+        final int appCount;
+        final long wallMs;
+        final long workMs;
+
+        Stats(boolean parallel, int threads, int appCount, long wallMs, long workMs) {
+            this.parallel = parallel;
+            this.threads = threads;
+            this.appCount = appCount;
+            this.wallMs = wallMs;
+            this.workMs = workMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d apps, %s on %d thread(s): %d ms wall, %d ms summed per-app time",
+                    appCount, parallel ? "parallel" : "serial", threads, wallMs, workMs);
+        }
+    }
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "AppAnalyzer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    <T> List<AppSummary> analyzeAll(List<T> items, Analysis<T> analysis) {
+        return analyzeAll(items, analysis, null);
+    }
+
+    <T> List<AppSummary> analyzeAll(List<T> items, Analysis<T> analysis, BatchSink sink) {
+        long start = SystemClock.elapsedRealtime();
+        AppSummary[] results = new AppSummary[items.size()];
+        AtomicLong workNanos = new AtomicLong();
+        boolean useParallel = POOL_SIZE > 1 && items.size() > 1;
+
+        if (useParallel) {
+            runOnPool(items, analysis, results, workNanos, sink);
+        } else {
+            List<AppSummary> pending = new ArrayList<>(STREAM_BATCH_SIZE);
+            for (int i = 0; i < items.size(); i++) {
+                results[i] = analyzeOne(items.get(i), analysis, workNanos);
+                collect(results[i], pending, sink);
+            }
+            flush(pending, sink);
+        }
+
+        List<AppSummary> apps = new ArrayList<>(results.length);
+        for (AppSummary app : results) {
+            if (app != null) apps.add(app);
+        }
+
+        Stats stats = new Stats(useParallel, useParallel ? POOL_SIZE : 1, apps.size(),
+                SystemClock.elapsedRealtime() - start, workNanos.get() / 1_000_000);
+        Log.d(TAG, "Analyzed " + stats);
+        return apps;
+    }
+
+    // Each worker pulls the next unclaimed index, so slow packages don't leave other cores idle
+    private <T> void runOnPool(List<T> items, Analysis<T> analysis, AppSummary[] results, AtomicLong workNanos,
+                               BatchSink sink) {
+        int workers = Math.min(POOL_SIZE, items.size());
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(workers);
+        for (int w = 0; w < workers; w++) {
+            pool.execute(() -> {
+                List<AppSummary> pending = new ArrayList<>(STREAM_BATCH_SIZE);
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < items.size()) {
+                        results[i] = analyzeOne(items.get(i), analysis, workNanos);
+                        collect(results[i], pending, sink);
+                    }
+                    flush(pending, sink);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void collect(AppSummary app, List<AppSummary> pending, BatchSink sink) {
+        if (sink == null || app == null) return;
+        pending.add(app);
+        if (pending.size() >= STREAM_BATCH_SIZE) {
+            flush(pending, sink);
+        }
+    }
+
+    private static void flush(List<AppSummary> pending, BatchSink sink) {
+        if (sink == null || pending.isEmpty()) return;
+        sink.onBatch(new ArrayList<>(pending));
+        pending.clear();
+    }
+
+    private static <T> AppSummary analyzeOne(T item, Analysis<T> analysis, AtomicLong workNanos) {
+        long start = System.nanoTime();
+        try {
+            return analysis.analyze(item);
+        } catch (Exception e) {
+            // One broken package (e.g. uninstalled mid-scan) must not fail the whole batch
+            Log.w(TAG, "Skipping package that failed analysis", e);
+            return null;
+        } finally {
+            workNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+}
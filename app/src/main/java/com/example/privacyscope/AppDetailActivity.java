@@ -1,43 +1,43 @@
 package com.example.privacyscope;
 
-import android.app.AppOpsManager;
-import android.app.usage.UsageStats;
-import android.app.usage.UsageStatsManager;
-import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.Settings;
+import android.util.Log;
+import android.util.SparseLongArray;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.ProgressBar;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 
 public class AppDetailActivity extends AppCompatActivity {
 
+    private static final String TAG = "PrivacyScope";
     private static final int USAGE_STATS_REQUEST_CODE = 101;
+    private static final long TREND_RANGE_MS = TimeUnit.DAYS.toMillis(365);
 
-    private ImageView appIconImageView;
-    private TextView appNameTextView, appVersionTextView, riskLevelTextView, appLastUsedTextView;
-    private ProgressBar riskProgressBar;
-    private LinearLayout permissionsContainer, trackersContainer, insightsContainer, recommendationsContainer;
+    private RecyclerView detailRecyclerView;
+    private ProgressBar loadingIndicator;
+    private AppDetailAdapter adapter;
     private Button managePermissionsButton;
     private ImageView backButton;
-    private View usagePermissionPrompt;
 
     private String currentPackageName;
 
@@ -68,24 +68,23 @@ public class AppDetailActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == USAGE_STATS_REQUEST_CODE) {
+            UsageIndex.getInstance(this).invalidate();
             loadAppDetails(currentPackageName);
         }
     }
 
     private void initializeViews() {
         backButton = findViewById(R.id.backButton);
-        appIconImageView = findViewById(R.id.appIcon);
-        appNameTextView = findViewById(R.id.appName);
-        appVersionTextView = findViewById(R.id.appVersion);
-        riskProgressBar = findViewById(R.id.riskProgressBar);
-        riskLevelTextView = findViewById(R.id.riskLevelTextView);
-        permissionsContainer = findViewById(R.id.permissionsContainer);
-        trackersContainer = findViewById(R.id.trackersContainer);
-        insightsContainer = findViewById(R.id.insightsContainer);
-        recommendationsContainer = findViewById(R.id.recommendationsContainer);
+        detailRecyclerView = findViewById(R.id.detailRecyclerView);
+        loadingIndicator = findViewById(R.id.detailLoadingIndicator);
         managePermissionsButton = findViewById(R.id.managePermissionsButton);
-        appLastUsedTextView = findViewById(R.id.appLastUsed);
-        usagePermissionPrompt = findViewById(R.id.usagePermissionPrompt);
+
+        detailRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new AppDetailAdapter(this, () -> {
+            Intent intent = new Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS);
+            startActivityForResult(intent, USAGE_STATS_REQUEST_CODE);
+        });
+        detailRecyclerView.setAdapter(adapter);
     }
 
     private void setupClickListeners() {
@@ -100,235 +99,199 @@ public class AppDetailActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Loads the details and builds every row in one pass on a background thread; the main
+     * thread only submits the finished rows. Details prefetched from a list row are picked up
+     * from the repository's cache or joined while still loading. If the usage index has to be queried, rows are
+     * shown first without the app's last-used line and resubmitted once it is available.
+     */
     private void loadAppDetails(String packageName) {
-        PackageManager pm = getPackageManager();
-        try {
-            PackageInfo packageInfo = pm.getPackageInfo(packageName, PackageManager.GET_PERMISSIONS | PackageManager.GET_RECEIVERS);
-            AppInfo appInfo = new AppInfo(packageInfo, pm);
-
-            appIconImageView.setImageDrawable(appInfo.getIcon());
-            appNameTextView.setText(appInfo.getAppName());
-            appVersionTextView.setText("Version " + packageInfo.versionName);
-
-            updateRiskColors(appInfo.getRiskLevel());
-            riskProgressBar.setProgress(appInfo.getRiskScore());
-            riskLevelTextView.setText(appInfo.getRiskLevel().toString());
-
-            if (hasUsageStatsPermission()) {
-                usagePermissionPrompt.setVisibility(View.GONE);
-                fetchAndDisplayAppLastUsedTime(appInfo);
-                new Thread(() -> {
-                    appInfo.fetchPermissionUsage(this);
-                    runOnUiThread(() -> displayPermissions(appInfo.getDangerousPermissions(), appInfo.getPermissionUsage()));
-                }).start();
-            } else {
-                appLastUsedTextView.setVisibility(View.GONE);
-                addPermissionPrompt();
-                displayPermissions(appInfo.getDangerousPermissions(), appInfo.getPermissionUsage());
-            }
-
-            displayTrackers(appInfo.getDetectedTrackers());
-            displayInsightsAndRecommendations(appInfo);
-
-        } catch (PackageManager.NameNotFoundException e) {
-            Toast.makeText(this, "App information not found.", Toast.LENGTH_SHORT).show();
-            finish();
+        final ScanRepository repository = ScanRepository.getInstance(this);
+        final UsageIndex usageIndex = UsageIndex.getInstance(this);
+        // The scan already knows the name and score, so the header can show before the details
+        ScanSnapshot snapshot = repository.getSnapshot();
+        AppSummary summary = snapshot == null ? null : snapshot.findApp(packageName);
+        if (summary != null && adapter.getItemCount() == 0) {
+            adapter.submitList(Collections.singletonList(AppDetailAdapter.Row.header(summary)));
         }
-    }
-
-    private void fetchAndDisplayAppLastUsedTime(AppInfo appInfo) {
-        UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-        long time = System.currentTimeMillis();
-        long startTime = time - (1000L * 3600 * 24 * 30);
-        List<UsageStats> appList = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, startTime, time);
-
-        if (appList != null && !appList.isEmpty()) {
-            long lastTimeUsed = 0;
-            for (UsageStats usageStats : appList) {
-                if (usageStats.getPackageName().equals(currentPackageName)) {
-                    if (usageStats.getLastTimeUsed() > lastTimeUsed) {
-                        lastTimeUsed = usageStats.getLastTimeUsed();
+        new Thread(() -> {
+            try {
+                // Reuses the details built earlier for this app (e.g. by a comparison) when it hasn't changed
+                AppInfo appInfo = repository.loadDetails(packageName);
+                // One AppOps check for the whole screen, not one per row
+                boolean usageAccess = usageIndex.hasPermission();
+                UsageIndex.Table usage = null;
+                // Last access time per AppOps op code. Kept here rather than on the AppInfo, which
+                // the repository caches and shares with other threads
+                SparseLongArray ops = new SparseLongArray();
+                if (usageAccess) {
+                    AppOpsSnapshot appOps = repository.getAppOps();
+                    if (!appOps.isEmpty()) {
+                        // The device-wide query from the last scan already has this app's ops
+                        ops = appOps.opsFor(appInfo.getUid());
+                    } else {
+                        ops = AppOpsReader.getInstance(this).readLastAccessTimes(appInfo.getUid(),
+                                appInfo.getPackageName(), appInfo.getDangerousPermissions());
                     }
+                    usage = usageIndex.peek();
                 }
+                final SparseLongArray permissionUsage = ops;
+                List<AppDetailAdapter.Row> rows = buildRows(appInfo, usageAccess, usage, permissionUsage);
+                runOnUiThread(() -> showRows(rows));
+
+                if (usageAccess && usage == null) {
+                    UsageIndex.Table table = usageIndex.get();
+                    if (table != null) {
+                        List<AppDetailAdapter.Row> withUsage = buildRows(appInfo, true, table, permissionUsage);
+                        runOnUiThread(() -> showRows(withUsage));
+                    }
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "App information not found.", Toast.LENGTH_SHORT).show();
+                    finish();
+                });
+            } catch (CancellationException e) {
+                // The thread was interrupted; the app may well still be installed, so stay open
+            } catch (RuntimeException e) {
+                // E.g. the package manager's binder call failing while the app is being updated
+                Log.w(TAG, "Could not load details for " + packageName, e);
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "Error: Could not load app details.", Toast.LENGTH_SHORT).show();
+                    finish();
+                });
             }
-            appInfo.setLastTimeUsed(lastTimeUsed);
-        }
-
-        if (appInfo.getLastTimeUsed() > 0) {
-            appLastUsedTextView.setText("App last used: " + formatTimeAgo(appInfo.getLastTimeUsed()));
-            appLastUsedTextView.setVisibility(View.VISIBLE);
-        } else {
-            appLastUsedTextView.setText("App not used in the last 30 days");
-            appLastUsedTextView.setVisibility(View.VISIBLE);
-        }
-    }
-
-    private void addPermissionPrompt() {
-        if (usagePermissionPrompt != null) {
-            usagePermissionPrompt.setVisibility(View.VISIBLE);
-            Button grantButton = usagePermissionPrompt.findViewById(R.id.grantUsagePermissionButton);
-            grantButton.setOnClickListener(v -> {
-                Intent intent = new Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS);
-                startActivityForResult(intent, USAGE_STATS_REQUEST_CODE);
-            });
-        }
+        }).start();
     }
 
-    private boolean hasUsageStatsPermission() {
-        AppOpsManager appOps = (AppOpsManager) getSystemService(Context.APP_OPS_SERVICE);
-        int mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS, android.os.Process.myUid(), getPackageName());
-        return mode == AppOpsManager.MODE_ALLOWED;
+    private void showRows(List<AppDetailAdapter.Row> rows) {
+        if (isDestroyed()) return;
+        loadingIndicator.setVisibility(View.GONE);
+        adapter.submitList(rows);
     }
 
-    private String formatTimeAgo(long timestamp) {
-        if (timestamp == 0) return "Not used recently";
-        long now = System.currentTimeMillis();
-        long diff = now - timestamp;
-
-        long seconds = TimeUnit.MILLISECONDS.toSeconds(diff);
-        if (seconds < 60) return "Just now";
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(diff);
-        if (minutes < 60) return minutes + " min ago";
-        long hours = TimeUnit.MILLISECONDS.toHours(diff);
-        if (hours < 24) return hours + " hours ago";
-        long days = TimeUnit.MILLISECONDS.toDays(diff);
-        return days + " days ago";
-    }
+    // Runs on a background thread; everything a row displays is formatted here
+    private List<AppDetailAdapter.Row> buildRows(AppInfo appInfo, boolean usageAccess, UsageIndex.Table usage,
+                                                 SparseLongArray permissionUsage) {
+        List<AppDetailAdapter.Row> rows = new ArrayList<>();
+
+        String lastUsed = null;
+        if (usage != null) {
+            long appLastUsed = usage.getLastUsed(appInfo.getPackageName());
+            lastUsed = appLastUsed > 0
+                    ? "App last used: " + formatTimeAgo(appLastUsed)
+                    : "App not used in the last 30 days";
+        }
+        rows.add(AppDetailAdapter.Row.header(appInfo, lastUsed, !usageAccess));
+        addTrendRows(rows, appInfo.getPackageName());
 
-    private void displayPermissions(List<AppInfo.PermissionDetail> permissions, Map<String, Long> usageMap) {
-        permissionsContainer.removeAllViews();
+        rows.add(AppDetailAdapter.Row.section("Dangerous Permissions"));
+        List<AppInfo.PermissionDetail> permissions = appInfo.getDangerousPermissions();
         if (permissions.isEmpty()) {
-            TextView noItems = new TextView(this);
-            noItems.setText("No dangerous permissions requested.");
-            noItems.setTextColor(ContextCompat.getColor(this, R.color.textColorSecondary));
-            noItems.setPadding(16, 16, 16, 16);
-            permissionsContainer.addView(noItems);
-            return;
+            rows.add(AppDetailAdapter.Row.empty("permissions", "No dangerous permissions requested."));
         }
-
+        PermissionRegistry registry = PermissionRegistry.getInstance(this);
+        AppOpsReader opsReader = AppOpsReader.getInstance(this);
         for (AppInfo.PermissionDetail permissionDetail : permissions) {
-            View permissionView = getLayoutInflater().inflate(R.layout.list_item_permission, permissionsContainer, false);
-            TextView permissionName = permissionView.findViewById(R.id.permissionName);
-            TextView permissionDescription = permissionView.findViewById(R.id.permissionDescription);
-            TextView permissionLastUsed = permissionView.findViewById(R.id.permissionLastUsed);
-
-            String permission = permissionDetail.name;
-            permissionName.setText(permission.substring(permission.lastIndexOf('.') + 1));
-            permissionDescription.setText(getPermissionExplanation(permission));
-
-            if (permissionDetail.isGranted) {
-                if (hasUsageStatsPermission()) {
-                    Long lastUsedTimestamp = usageMap.get(permission);
-                    if (lastUsedTimestamp != null && lastUsedTimestamp > 0) {
-                        permissionLastUsed.setText("Last used: " + formatTimeAgo(lastUsedTimestamp));
-                        permissionLastUsed.setVisibility(View.VISIBLE);
-                    } else {
-                        permissionLastUsed.setText("Usage data not available from Android OS");
-                        permissionLastUsed.setTextColor(ContextCompat.getColor(this, R.color.textColorSecondary));
-                        permissionLastUsed.setVisibility(View.VISIBLE);
-                    }
-                } else {
-                    permissionLastUsed.setVisibility(View.GONE);
-                }
-            } else {
-                permissionName.setTextColor(ContextCompat.getColor(this, R.color.risk_high));
-                permissionDescription.setText(permissionDescription.getText() + " (Not granted)");
-                permissionLastUsed.setVisibility(View.GONE);
+            String description = registry.getDescription(permissionDetail.permission);
+            String permissionLastUsed = null;
+            if (!permissionDetail.isGranted) {
+                description += " (Not granted)";
+            } else if (usageAccess) {
+                int op = opsReader.opCodeOf(permissionDetail.permission);
+                long lastUsedTimestamp = op == AppOpsReader.OP_NONE ? 0 : permissionUsage.get(op);
+                permissionLastUsed = lastUsedTimestamp > 0
+                        ? "Last used: " + formatTimeAgo(lastUsedTimestamp)
+                        : "Usage data not available from Android OS";
             }
-
-            permissionsContainer.addView(permissionView);
+            rows.add(AppDetailAdapter.Row.permission(permissionDetail.permission.getShortName(), description,
+                    permissionLastUsed, permissionDetail.isGranted));
         }
-    }
-
-    private void updateRiskColors(AppInfo.RiskLevel level) {
-        int colorRes;
-        Drawable progressDrawable;
-
-        switch (level) {
-            case HIGH:
-                colorRes = R.color.risk_high;
-                progressDrawable = ContextCompat.getDrawable(this, R.drawable.progress_bar_high_risk);
-                break;
-            case MEDIUM:
-                colorRes = R.color.risk_medium;
-                progressDrawable = ContextCompat.getDrawable(this, R.drawable.progress_bar_medium_risk);
-                break;
-            default:
-                colorRes = R.color.risk_low;
-                progressDrawable = ContextCompat.getDrawable(this, R.drawable.progress_bar_low_risk);
-                break;
-        }
-        riskLevelTextView.setTextColor(ContextCompat.getColor(this, colorRes));
-        riskProgressBar.setProgressDrawable(progressDrawable);
-    }
 
-    private void displayTrackers(List<String> trackers) {
-        trackersContainer.removeAllViews();
+        rows.add(AppDetailAdapter.Row.section("Trackers Detected"));
+        List<String> trackers = appInfo.getDetectedTrackers();
         if (trackers.isEmpty()) {
-            TextView noItems = new TextView(this);
-            noItems.setText("No trackers detected.");
-            noItems.setPadding(16, 16, 16, 16);
-            trackersContainer.addView(noItems);
-            return;
+            rows.add(AppDetailAdapter.Row.empty("trackers", "No trackers detected."));
         }
-
         for (String tracker : trackers) {
-            View trackerView = getLayoutInflater().inflate(R.layout.list_item_tracker, trackersContainer, false);
-            TextView trackerName = trackerView.findViewById(R.id.trackerName);
-            trackerName.setText(tracker);
-            trackersContainer.addView(trackerView);
+            rows.add(AppDetailAdapter.Row.tracker(tracker));
         }
-    }
-
-    private void displayInsightsAndRecommendations(AppInfo appInfo) {
-        insightsContainer.removeAllViews();
-        recommendationsContainer.removeAllViews();
 
+        rows.add(AppDetailAdapter.Row.section("Privacy Insights"));
         if (appInfo.getRiskLevel() == AppInfo.RiskLevel.HIGH) {
-            addInsight("This app poses a maximum privacy risk based on its requested permissions.");
+            rows.add(AppDetailAdapter.Row.insight("insights", "This app poses a maximum privacy risk based on its requested permissions."));
         }
         if (appInfo.getDangerousPermissions().size() > 4) {
-            addInsight("Requests access to a wide range of sensitive device capabilities.");
+            rows.add(AppDetailAdapter.Row.insight("insights", "Requests access to a wide range of sensitive device capabilities."));
         }
         if (appInfo.getDetectedTrackers().size() > 3) {
-            addInsight("Engages in extensive cross-platform tracking.");
+            rows.add(AppDetailAdapter.Row.insight("insights", "Engages in extensive cross-platform tracking."));
         }
 
+        rows.add(AppDetailAdapter.Row.section("Recommendations"));
         if (appInfo.getRiskScore() > 80) {
-            addRecommendation("Strongly consider if this app is trustworthy.");
+            rows.add(AppDetailAdapter.Row.insight("recommendations", "Strongly consider if this app is trustworthy."));
         }
         if (appInfo.getDetectedTrackers().size() > 0) {
-            addRecommendation("Use a web version if available to limit tracking.");
+            rows.add(AppDetailAdapter.Row.insight("recommendations", "Use a web version if available to limit tracking."));
         }
         if (appInfo.getDangerousPermissions().size() > 0) {
-            addRecommendation("Review and revoke any permissions you are not comfortable with.");
+            rows.add(AppDetailAdapter.Row.insight("recommendations", "Review and revoke any permissions you are not comfortable with."));
         }
+        return rows;
     }
 
-    private void addInsight(String text) {
-        View insightView = getLayoutInflater().inflate(R.layout.list_item_insight, insightsContainer, false);
-        TextView insightText = insightView.findViewById(R.id.insightText);
-        insightText.setText(text);
-        insightsContainer.addView(insightView);
+    // A year of this app's recorded scans; the history is in memory, so this is a binary search
+    private void addTrendRows(List<AppDetailAdapter.Row> rows, String packageName) {
+        long now = System.currentTimeMillis();
+        long from = now - TREND_RANGE_MS;
+        ScanHistory.AppTrend trend = ScanHistory.getInstance(this).getAppTrend(packageName, from, now);
+        int n = trend.size();
+        if (n == 0) return;
+
+        long[] times = new long[n];
+        float[] scores = new float[n];
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            times[i] = trend.getTime(i);
+            scores[i] = trend.isInstalled(i) ? trend.getRiskScore(i) : Float.NaN;
+            if (trend.isInstalled(i)) {
+                if (first < 0) first = i;
+                last = i;
+            }
+        }
+        if (first < 0) return;
+
+        long since = Math.max(trend.getTime(0), from);
+        String date = new SimpleDateFormat("MMM d, yyyy", Locale.getDefault()).format(new Date(since));
+        int firstScore = trend.getRiskScore(first);
+        int lastScore = trend.getRiskScore(last);
+        String summary = firstScore == lastScore
+                ? "Risk score unchanged at " + lastScore + " since " + date
+                : "Risk score " + firstScore + " → " + lastScore + " since " + date;
+        if (trend.getGrantedCount(first) != trend.getGrantedCount(last)) {
+            summary += "\nGranted permissions " + trend.getGrantedCount(first) + " → " + trend.getGrantedCount(last);
+        }
+        if (trend.getTrackerCount(first) != trend.getTrackerCount(last)) {
+            summary += "\nTrackers " + trend.getTrackerCount(first) + " → " + trend.getTrackerCount(last);
+        }
+        rows.add(AppDetailAdapter.Row.section("Risk Trend"));
+        rows.add(AppDetailAdapter.Row.trend(summary, times, scores, since));
     }
 
-    private void addRecommendation(String text) {
-        View recommendationView = getLayoutInflater().inflate(R.layout.list_item_insight, recommendationsContainer, false);
-        TextView insightText = recommendationView.findViewById(R.id.insightText);
-        insightText.setText(text);
-        recommendationsContainer.addView(recommendationView);
-    }
+    static String formatTimeAgo(long timestamp) {
+        if (timestamp == 0) return "Not used recently";
+        long now = System.currentTimeMillis();
+        long diff = now - timestamp;
 
-    private String getPermissionExplanation(String permission) {
-        switch (permission) {
-            case "android.permission.READ_SMS": return "Allows the app to read your text messages.";
-            case "android.permission.ACCESS_FINE_LOCATION": return "Allows the app to get your precise location using GPS.";
-            case "android.permission.CAMERA": return "Allows the app to take pictures and record video.";
-            case "android.permission.RECORD_AUDIO": return "Allows the app to record audio with the microphone.";
-            case "android.permission.WRITE_EXTERNAL_STORAGE": return "Allows the app to read and write files on your device's storage.";
-            case "android.permission.READ_PHONE_STATE": return "Allows the app to access your phone number and device IDs.";
-            case "android.permission.READ_CONTACTS": return "Allows the app to read your contacts list.";
-            default: return "This permission grants access to sensitive system features.";
-        }
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(diff);
+        if (seconds < 60) return "Just now";
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(diff);
+        if (minutes < 60) return minutes + " min ago";
+        long hours = TimeUnit.MILLISECONDS.toHours(diff);
+        if (hours < 24) return hours + " hours ago";
+        long days = TimeUnit.MILLISECONDS.toDays(diff);
+        return days + " days ago";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The app detail screen as one recycled list of typed rows: a header, then permission, tracker,
+ * insight and recommendation sections. Rows are display-ready {@link Row} models built off the
+ * main thread by {@link AppDetailActivity}, so binding only sets texts and colors.
+ */
+public class AppDetailAdapter extends ListAdapter<AppDetailAdapter.Row, RecyclerView.ViewHolder> {
+
+    static final int TYPE_HEADER = 0;
+    static final int TYPE_SECTION = 1;
+    static final int TYPE_PERMISSION = 2;
+    static final int TYPE_TRACKER = 3;
+    static final int TYPE_INSIGHT = 4;
+    static final int TYPE_EMPTY = 5;
+    static final int TYPE_TREND = 6;
+
+    public interface OnGrantUsageAccessListener {
+        void onGrantUsageAccess();
+    }
+
+    /**
+     * One row. {@code key} identifies the row across rebuilds; the meaning of the texts depends
+     * on the type (for a permission: short name, explanation, last-used line).
+     */
+    static final class Row {
+        final int type;
+        final String key;
+        final String text;
+        final String detail;
+        // Optional third line; null hides it
+        final String note;
+        // Permission: granted; header: show the usage access prompt
+        final boolean flag;
+        // Header only
+        final String packageName;
+        final int riskScore;
+        final AppInfo.RiskLevel riskLevel;
+        // Trend only: risk score over time, NaN while not installed
+        final long[] trendTimes;
+        final float[] trendScores;
+        final long trendStart;
+
+        private Row(int type, String key, String text, String detail, String note, boolean flag,
+                    String packageName, int riskScore, AppInfo.RiskLevel riskLevel) {
+            this(type, key, text, detail, note, flag, packageName, riskScore, riskLevel, null, null, 0);
+        }
+
+        private Row(int type, String key, String text, String detail, String note, boolean flag,
+                    String packageName, int riskScore, AppInfo.RiskLevel riskLevel,
+                    long[] trendTimes, float[] trendScores, long trendStart) {
+            this.type = type;
+            this.key = key;
+            this.text = text;
+            this.detail = detail;
+            this.note = note;
+            this.flag = flag;
+            this.packageName = packageName;
+            this.riskScore = riskScore;
+            this.riskLevel = riskLevel;
+            this.trendTimes = trendTimes;
+            this.trendScores = trendScores;
+            this.trendStart = trendStart;
+        }
+
+        static Row header(AppInfo app, String lastUsed, boolean showUsagePrompt) {
+            return new Row(TYPE_HEADER, "header", app.getAppName(), "Version " + app.getVersionName(), lastUsed,
+                    showUsagePrompt, app.getPackageName(), app.getRiskScore(), app.getRiskLevel());
+        }
+
+        // Shown from the scanned summary while the full details load
+        static Row header(AppSummary app) {
+            return new Row(TYPE_HEADER, "header", app.getAppName(), null, null, false,
+                    app.getPackageName(), app.getRiskScore(), app.getRiskLevel());
+        }
+
+        static Row trend(String summary, long[] times, float[] scores, long start) {
+            return new Row(TYPE_TREND, "trend", summary, null, null, false, null, 0, null, times, scores, start);
+        }
+
+        static Row section(String title) {
+            return new Row(TYPE_SECTION, "section:" + title, title, null, null, false, null, 0, null);
+        }
+
+        static Row permission(String name, String explanation, String lastUsed, boolean granted) {
+            return new Row(TYPE_PERMISSION, "permission:" + name, name, explanation, lastUsed, granted, null, 0, null);
+        }
+
+        static Row tracker(String name) {
+            return new Row(TYPE_TRACKER, "tracker:" + name, name, null, null, false, null, 0, null);
+        }
+
+        static Row insight(String section, String text) {
+            return new Row(TYPE_INSIGHT, section + ":" + text, text, null, null, false, null, 0, null);
+        }
+
+        static Row empty(String section, String text) {
+            return new Row(TYPE_EMPTY, section + ":empty", text, null, null, false, null, 0, null);
+        }
+
+        boolean sameContent(Row other) {
+            return type == other.type && text.equals(other.text) && flag == other.flag
+                    && equal(detail, other.detail) && equal(note, other.note)
+                    && riskScore == other.riskScore && riskLevel == other.riskLevel
+                    && trendStart == other.trendStart && Arrays.equals(trendTimes, other.trendTimes)
+                    && Arrays.equals(trendScores, other.trendScores);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Row> DIFF = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            return oldRow.key.equals(newRow.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            return oldRow.sameContent(newRow);
+        }
+    };
+
+    private final Context context;
+    private final OnGrantUsageAccessListener grantListener;
+
+    public AppDetailAdapter(Context context, OnGrantUsageAccessListener grantListener) {
+        super(DIFF);
+        this.context = context;
+        this.grantListener = grantListener;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).type;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        switch (viewType) {
+            case TYPE_HEADER:
+                return new HeaderHolder(inflater.inflate(R.layout.list_item_detail_header, parent, false));
+            case TYPE_SECTION:
+                return new TextHolder(inflater.inflate(R.layout.list_item_section_title, parent, false), R.id.sectionTitle);
+            case TYPE_PERMISSION:
+                return new PermissionHolder(inflater.inflate(R.layout.list_item_permission, parent, false));
+            case TYPE_TRACKER:
+                return new TextHolder(inflater.inflate(R.layout.list_item_tracker, parent, false), R.id.trackerName);
+            case TYPE_TREND:
+                return new TrendHolder(inflater.inflate(R.layout.list_item_detail_trend, parent, false));
+            case TYPE_INSIGHT:
+                return new TextHolder(inflater.inflate(R.layout.list_item_insight, parent, false), R.id.insightText);
+            default:
+                return new TextHolder(inflater.inflate(R.layout.list_item_detail_empty, parent, false), R.id.emptyText);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Row row = getItem(position);
+        if (holder instanceof HeaderHolder) {
+            bindHeader((HeaderHolder) holder, row);
+        } else if (holder instanceof PermissionHolder) {
+            bindPermission((PermissionHolder) holder, row);
+        } else if (holder instanceof TrendHolder) {
+            TrendHolder trend = (TrendHolder) holder;
+            trend.summary.setText(row.text);
+            trend.chart.setSeries(row.trendTimes, row.trendScores, row.trendStart, System.currentTimeMillis(), 100);
+        } else {
+            ((TextHolder) holder).text.setText(row.text);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        if (holder instanceof HeaderHolder) {
+            IconLoader.getInstance(context).cancel(((HeaderHolder) holder).appIcon);
+        }
+    }
+
+    private void bindHeader(HeaderHolder holder, Row row) {
+        IconLoader.getInstance(context).load(holder.appIcon, row.packageName);
+        holder.appName.setText(row.text);
+        holder.appVersion.setText(row.detail);
+        holder.appLastUsed.setText(row.note);
+        holder.appLastUsed.setVisibility(row.note != null ? View.VISIBLE : View.GONE);
+
+        int colorRes;
+        int progressRes;
+        switch (row.riskLevel) {
+            case HIGH:
+                colorRes = R.color.risk_high;
+                progressRes = R.drawable.progress_bar_high_risk;
+                break;
+            case MEDIUM:
+                colorRes = R.color.risk_medium;
+                progressRes = R.drawable.progress_bar_medium_risk;
+                break;
+            default:
+                colorRes = R.color.risk_low;
+                progressRes = R.drawable.progress_bar_low_risk;
+                break;
+        }
+        holder.riskLevel.setText(row.riskLevel.toString());
+        holder.riskLevel.setTextColor(ContextCompat.getColor(context, colorRes));
+        holder.riskProgress.setProgressDrawable(ContextCompat.getDrawable(context, progressRes));
+        holder.riskProgress.setProgress(row.riskScore);
+
+        // The ranking is confined to the main thread, like binding, so the rank is looked up here
+        RiskRanking ranking = ScanRepository.getInstance(context).getRanking();
+        int rank = ranking.rankOf(row.packageName);
+        holder.riskRank.setText(rank > 0 ? "#" + rank + " of " + ranking.size() + " apps by risk" : null);
+        holder.riskRank.setVisibility(rank > 0 ? View.VISIBLE : View.GONE);
+
+        holder.usagePrompt.setVisibility(row.flag ? View.VISIBLE : View.GONE);
+        holder.grantButton.setOnClickListener(v -> grantListener.onGrantUsageAccess());
+    }
+
+    private void bindPermission(PermissionHolder holder, Row row) {
+        holder.name.setText(row.text);
+        holder.name.setTextColor(row.flag ? holder.defaultNameColor : ContextCompat.getColor(context, R.color.risk_high));
+        holder.description.setText(row.detail);
+        holder.lastUsed.setText(row.note);
+        holder.lastUsed.setVisibility(row.note != null ? View.VISIBLE : View.GONE);
+    }
+
+    static class HeaderHolder extends RecyclerView.ViewHolder {
+        final ImageView appIcon;
+        final TextView appName, appVersion, appLastUsed, riskLevel, riskRank;
+        final ProgressBar riskProgress;
+        final View usagePrompt;
+        final Button grantButton;
+
+        HeaderHolder(@NonNull View itemView) {
+            super(itemView);
+            appIcon = itemView.findViewById(R.id.appIcon);
+            appName = itemView.findViewById(R.id.appName);
+            appVersion = itemView.findViewById(R.id.appVersion);
+            appLastUsed = itemView.findViewById(R.id.appLastUsed);
+            riskLevel = itemView.findViewById(R.id.riskLevelTextView);
+            riskProgress = itemView.findViewById(R.id.riskProgressBar);
+            riskRank = itemView.findViewById(R.id.riskRankTextView);
+            usagePrompt = itemView.findViewById(R.id.usagePermissionPrompt);
+            grantButton = itemView.findViewById(R.id.grantUsagePermissionButton);
+        }
+    }
+
+    static class PermissionHolder extends RecyclerView.ViewHolder {
+        final TextView name, description, lastUsed;
+        // Recycled holders may have been tinted for a denied permission
+        final int defaultNameColor;
+
+        PermissionHolder(@NonNull View itemView) {
+            super(itemView);
+            name = itemView.findViewById(R.id.permissionName);
+            description = itemView.findViewById(R.id.permissionDescription);
+            lastUsed = itemView.findViewById(R.id.permissionLastUsed);
+            defaultNameColor = name.getCurrentTextColor();
+        }
+    }
+
+    static class TrendHolder extends RecyclerView.ViewHolder {
+        final TextView summary;
+        final TrendChartView chart;
+
+        TrendHolder(@NonNull View itemView) {
+            super(itemView);
+            summary = itemView.findViewById(R.id.trendSummary);
+            chart = itemView.findViewById(R.id.trendChart);
+        }
+    }
+
+    static class TextHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        TextHolder(@NonNull View itemView, int textId) {
+            super(itemView);
+            text = itemView.findViewById(textId);
+        }
+    }
+}
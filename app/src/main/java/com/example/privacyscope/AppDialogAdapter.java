@@ -7,22 +7,24 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class AppDialogAdapter extends RecyclerView.Adapter<AppDialogAdapter.ViewHolder> {
+public class AppDialogAdapter extends ListAdapter<AppRow, AppDialogAdapter.ViewHolder> {
 
-    private final List<AppInfo> appList;
     private final OnAppSelectedListener listener;
 
     public interface OnAppSelectedListener {
-        void onAppSelected(AppInfo app);
+        void onAppSelected(AppSummary app);
     }
 
-    public AppDialogAdapter(List<AppInfo> appList, OnAppSelectedListener listener) {
-        this.appList = appList;
+    public AppDialogAdapter(OnAppSelectedListener listener) {
+        super(AppRow.DIFF);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -34,15 +36,29 @@ public class AppDialogAdapter extends RecyclerView.Adapter<AppDialogAdapter.View
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = appList.get(position);
-        holder.appName.setText(app.getAppName());
-        holder.appIcon.setImageDrawable(app.getIcon());
-        holder.itemView.setOnClickListener(v -> listener.onAppSelected(app));
+        AppRow row = getItem(position);
+        holder.appName.setText(row.title);
+        IconLoader.getInstance(holder.itemView.getContext()).load(holder.appIcon, row.packageName);
+        holder.itemView.setOnClickListener(v -> listener.onAppSelected(row.app));
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    /** Shows {@code apps} in the given order. The list must not be modified afterwards. */
+    public void submitApps(List<AppSummary> apps) {
+        List<AppRow> rows = new ArrayList<>(apps.size());
+        for (AppSummary app : apps) {
+            rows.add(new AppRow(app, app.getPackageName()));
+        }
+        submitList(rows);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        IconLoader.getInstance(holder.itemView.getContext()).cancel(holder.appIcon);
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -56,4 +72,3 @@ public class AppDialogAdapter extends RecyclerView.Adapter<AppDialogAdapter.View
         }
     }
 }
-
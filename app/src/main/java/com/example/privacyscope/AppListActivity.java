@@ -1,16 +1,17 @@
 package com.example.privacyscope;
 
 import android.content.Intent;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.widget.Toast;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
+import com.google.android.material.chip.ChipGroup;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -20,7 +21,45 @@ public class AppListActivity extends AppCompatActivity {
 
     private RecyclerView appListRecyclerView;
     private AppListAdapter adapter;
-    private final List<AppInfo> allApps = new ArrayList<>();
+    private ScanRepository scanRepository;
+    private final ScanRepository.Listener scanListener = new ScanRepository.Listener() {
+        @Override
+        public void onSnapshotChanged(ScanSnapshot snapshot) {
+            showApps(snapshot);
+        }
+
+        @Override
+        public void onScanBatch(List<AppSummary> batch) {
+            // First scan still running: show rows as soon as they are analyzed
+            for (AppSummary app : batch) {
+                int index = Collections.binarySearch(streamedApps, app, ScanSnapshot.BY_NAME);
+                streamedApps.add(index < 0 ? -index - 1 : index, app);
+            }
+            adapter.submitApps(visibleStreamedApps());
+        }
+    };
+    // Current search; rows that don't match are hidden
+    private AppSearchIndex.Query query = new AppSearchIndex.Query();
+    private EditText searchEditText;
+    private ChipGroup riskFilterChipGroup;
+    // Rows streamed by the first scan in name order, searched without an index until the snapshot arrives
+    private final List<AppSummary> streamedApps = new ArrayList<>();
+
+    // Rows show when each app was last used once the shared usage index is available
+    private void loadUsage() {
+        UsageIndex usageIndex = UsageIndex.getInstance(this);
+        UsageIndex.Table cached = usageIndex.peek();
+        if (cached != null) {
+            adapter.setUsage(cached);
+            return;
+        }
+        new Thread(() -> {
+            UsageIndex.Table table = usageIndex.get();
+            if (table != null) {
+                runOnUiThread(() -> adapter.setUsage(table));
+            }
+        }).start();
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,8 +68,11 @@ public class AppListActivity extends AppCompatActivity {
 
         appListRecyclerView = findViewById(R.id.allAppsRecyclerView);
         appListRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new AppListAdapter(allApps, this);
+        adapter = new AppListAdapter(this);
         appListRecyclerView.setAdapter(adapter);
+        DetailPrefetcher.attach(appListRecyclerView, adapter);
+        loadUsage();
+        setupSearch();
 
         // Setup Bottom Navigation
         BottomNavigationView bottomNavigationView = findViewById(R.id.bottom_navigation);
@@ -64,30 +106,72 @@ public class AppListActivity extends AppCompatActivity {
             return false;
         });
 
-        loadAllApps();
+        scanRepository = ScanRepository.getInstance(this);
+        scanRepository.addListener(scanListener);
+        scanRepository.ensureFresh();
     }
 
-    private void loadAllApps() {
-        new Thread(() -> {
-            PackageManager pm = getPackageManager();
-            List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_PERMISSIONS);
-            allApps.clear();
-
-            for (PackageInfo packageInfo : packages) {
-                // Check if it's a user-installed app
-                if ((packageInfo.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    // This is the corrected way to create the AppInfo object
-                    AppInfo appInfo = new AppInfo(packageInfo, pm);
-                    allApps.add(appInfo);
-                }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scanRepository.removeListener(scanListener);
+    }
+
+    private void setupSearch() {
+        searchEditText = findViewById(R.id.searchEditText);
+        riskFilterChipGroup = findViewById(R.id.riskFilterChipGroup);
+        // Every keystroke re-runs the query against the snapshot's index
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onQueryChanged();
             }
+        });
+        riskFilterChipGroup.setOnCheckedStateChangeListener((group, checkedIds) -> onQueryChanged());
+    }
 
-            // Sort apps alphabetically by name for this list
-            Collections.sort(allApps, (a1, a2) -> a1.getAppName().compareToIgnoreCase(a2.getAppName()));
+    private void onQueryChanged() {
+        AppInfo.RiskLevel level = null;
+        int checked = riskFilterChipGroup.getCheckedChipId();
+        if (checked == R.id.chipRiskHigh) level = AppInfo.RiskLevel.HIGH;
+        else if (checked == R.id.chipRiskMedium) level = AppInfo.RiskLevel.MEDIUM;
+        else if (checked == R.id.chipRiskLow) level = AppInfo.RiskLevel.LOW;
 
-            // Update UI on the main thread
-            runOnUiThread(() -> adapter.notifyDataSetChanged());
-        }).start();
+        AppSearchIndex.Query parsed = AppSearchIndex.Query.parse(searchEditText.getText().toString(),
+                PermissionRegistry.getInstance(this), TrackerDatabase.getInstance(this));
+        // A chip overrides a risk: token typed into the box
+        query = level != null ? parsed.withLevel(level) : parsed;
+
+        ScanSnapshot snapshot = scanRepository.getSnapshot();
+        if (snapshot != null) {
+            showApps(snapshot);
+        } else {
+            adapter.submitApps(visibleStreamedApps());
+        }
+    }
+
+    // A copy, because streamedApps keeps growing while the adapter diffs against what it was given
+    private List<AppSummary> visibleStreamedApps() {
+        if (query.isEmpty()) return new ArrayList<>(streamedApps);
+        List<AppSummary> matches = new ArrayList<>();
+        for (AppSummary app : streamedApps) {
+            if (query.matches(app)) matches.add(app);
+        }
+        return matches;
     }
-}
 
+    // Snapshot lists are immutable, so the adapter can diff against them directly; unchanged
+    // apps keep the same summary objects and are not rebound
+    private void showApps(ScanSnapshot snapshot) {
+        streamedApps.clear();
+        adapter.submitApps(query.isEmpty() ? snapshot.getAppsByName() : snapshot.getSearchIndex().search(query));
+    }
+}
@@ -8,18 +8,31 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.chip.Chip;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHolder> {
+/**
+ * App list rows. Callers submit immutable lists of apps; rows are built once per app (and per
+ * usage index) and diffed against the shown list on a background thread, so only rows that
+ * actually changed are rebound and item animations are kept.
+ */
+public class AppListAdapter extends ListAdapter<AppRow, AppListAdapter.ViewHolder> {
 
-    private final List<AppInfo> appList;
     private final Context context;
+    private UsageIndex.Table usage;
+    // Last row built per package; reused while the summary is the same object
+    private final Map<String, AppRow> rowCache = new HashMap<>();
+    private List<AppSummary> apps = new ArrayList<>();
 
-    public AppListAdapter(List<AppInfo> appList, Context context) {
-        this.appList = appList;
+    public AppListAdapter(Context context) {
+        super(AppRow.DIFF);
         this.context = context;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -31,36 +44,60 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = appList.get(position);
-
-        holder.appName.setText(app.getAppName());
-        holder.appPackageName.setText(app.getPackageName());
-        holder.appIcon.setImageDrawable(app.getIcon());
-        holder.riskChip.setText(app.getRiskLevel().name());
-
-        switch (app.getRiskLevel()) {
-            case HIGH:
-                holder.riskChip.setChipBackgroundColorResource(R.color.risk_high);
-                break;
-            case MEDIUM:
-                holder.riskChip.setChipBackgroundColorResource(R.color.risk_medium);
-                break;
-            case LOW:
-                holder.riskChip.setChipBackgroundColorResource(R.color.risk_low);
-                break;
-        }
+        AppRow row = getItem(position);
+
+        holder.appName.setText(row.title);
+        holder.appPackageName.setText(row.subtitle);
+        IconLoader.getInstance(holder.itemView.getContext()).load(holder.appIcon, row.packageName);
+        holder.riskChip.setText(row.riskLabel);
+        holder.riskChip.setChipBackgroundColorResource(row.riskColorRes);
 
+        DetailPrefetcher.prefetchOnPress(holder.itemView, row.packageName);
         holder.itemView.setOnClickListener(v -> {
             Intent intent = new Intent(context, AppDetailActivity.class);
             // FIX: Pass only the package name, not the whole object.
-            intent.putExtra("PACKAGE_NAME", app.getPackageName());
+            intent.putExtra("PACKAGE_NAME", row.packageName);
             context.startActivity(intent);
         });
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    /** Shows {@code apps} in the given order. The list must not be modified afterwards. */
+    public void submitApps(List<AppSummary> apps) {
+        this.apps = apps;
+        List<AppRow> rows = new ArrayList<>(apps.size());
+        for (AppSummary app : apps) {
+            rows.add(rowFor(app));
+        }
+        submitList(rows);
+    }
+
+    public void setUsage(UsageIndex.Table usage) {
+        this.usage = usage;
+        rowCache.clear();
+        submitApps(apps);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        IconLoader.getInstance(holder.itemView.getContext()).cancel(holder.appIcon);
+    }
+
+    private AppRow rowFor(AppSummary app) {
+        AppRow row = rowCache.get(app.getPackageName());
+        if (row == null || row.app != app) {
+            long lastUsed = usage == null ? 0 : usage.getLastUsed(app.getPackageName());
+            String subtitle = lastUsed > 0
+                    ? app.getPackageName() + " · Used " + AppDetailActivity.formatTimeAgo(lastUsed)
+                    : app.getPackageName();
+            row = new AppRow(app, subtitle);
+            rowCache.put(app.getPackageName(), row);
+        }
+        return row;
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -84,4 +121,3 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
         }
     }
 }
-
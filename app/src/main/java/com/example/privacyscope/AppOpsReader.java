@@ -0,0 +1,231 @@
+package com.example.privacyscope;
+
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseLongArray;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads when an app last used its permissions, from AppOpsManager.
+ * The hidden AppOps methods involved are looked up by reflection once per process, and all
+ * of an app's ops are requested in a single getOpsForPackage call. Results are keyed by the
+ * AppOps op code in a {@link SparseLongArray}; {@link #opCodeOf} maps a permission to its op.
+ * {@link #readAllPackages} fetches the same data for every package on the device in one query.
+ * Safe to use from any thread; calls that reach the system service belong off the main thread.
+ */
+final class AppOpsReader {
+
+    private static final String TAG = "PrivacyScope";
+    /** Op code for permissions that have no app op. */
+    static final int OP_NONE = -1;
+
+    // Special app access that no runtime permission maps to, but which the bulk query includes.
+    // Unknown op names make the whole query fail, so each is paired with the SDK that added it.
+    private static final String[] SPECIAL_OPS = {
+            "android:system_alert_window",
+            "android:write_settings",
+            "android:get_usage_stats",
+            "android:request_install_packages",
+            "android:picture_in_picture",
+            "android:manage_external_storage",
+    };
+    private static final int[] SPECIAL_OPS_MIN_SDK = {
+            Build.VERSION_CODES.M,
+            Build.VERSION_CODES.M,
+            Build.VERSION_CODES.M,
+            Build.VERSION_CODES.O,
+            Build.VERSION_CODES.O,
+            Build.VERSION_CODES.R,
+    };
+
+    private static AppOpsReader instance;
+
+    private final AppOpsManager appOps;
+    // Null when this Android version doesn't expose them; usage then reads as unavailable
+    private final Method getOpsForPackage;
+    private final Method permissionToOpCode;
+    private final Method packageOpsGetOps;
+    private final Method opEntryGetOp;
+    private final Method opEntryGetLastAccessTime;
+    // Device-wide query: getPackagesForOps(String[]) from Android 10, otherwise (int[]) with strOpToOp
+    private final Method getPackagesForOps;
+    private final Method strOpToOp;
+    private final Method packageOpsGetUid;
+
+    private AppOpsReader(Context context) {
+        this.appOps = (AppOpsManager) context.getApplicationContext().getSystemService(Context.APP_OPS_SERVICE);
+        Method getOps = null, toOpCode = null, ops = null, op = null, lastAccess = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                getOps = AppOpsManager.class.getMethod("getOpsForPackage", int.class, String.class, String[].class);
+                toOpCode = AppOpsManager.class.getMethod("permissionToOpCode", String.class);
+                ops = Class.forName("android.app.AppOpsManager$PackageOps").getMethod("getOps");
+                Class<?> opEntry = Class.forName("android.app.AppOpsManager$OpEntry");
+                op = opEntry.getMethod("getOp");
+                lastAccess = opEntry.getMethod("getLastAccessTime");
+            } catch (ReflectiveOperationException e) {
+                Log.w(TAG, "AppOps usage is not available on this device", e);
+                getOps = null;
+            }
+        }
+        this.getOpsForPackage = getOps;
+        this.permissionToOpCode = toOpCode;
+        this.packageOpsGetOps = ops;
+        this.opEntryGetOp = op;
+        this.opEntryGetLastAccessTime = lastAccess;
+
+        Method forOps = null, strToOp = null, uid = null;
+        if (getOps != null) {
+            try {
+                uid = Class.forName("android.app.AppOpsManager$PackageOps").getMethod("getUid");
+                try {
+                    forOps = AppOpsManager.class.getMethod("getPackagesForOps", String[].class);
+                } catch (NoSuchMethodException e) {
+                    forOps = AppOpsManager.class.getMethod("getPackagesForOps", int[].class);
+                    strToOp = AppOpsManager.class.getMethod("strOpToOp", String.class);
+                }
+            } catch (ReflectiveOperationException e) {
+                Log.w(TAG, "Device-wide AppOps query is not available", e);
+                forOps = null;
+            }
+        }
+        this.getPackagesForOps = forOps;
+        this.strOpToOp = strToOp;
+        this.packageOpsGetUid = uid;
+    }
+
+    static synchronized AppOpsReader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppOpsReader(context);
+        }
+        return instance;
+    }
+
+    boolean isAvailable() {
+        return appOps != null && getOpsForPackage != null;
+    }
+
+    /** The AppOps op code guarding {@code permission}, or {@link #OP_NONE}; cached on the entry. */
+    int opCodeOf(PermissionRegistry.Entry permission) {
+        int code = permission.appOpCode;
+        if (code == PermissionRegistry.Entry.OP_UNRESOLVED) {
+            code = OP_NONE;
+            if (isAvailable()) {
+                try {
+                    code = (int) permissionToOpCode.invoke(null, permission.getName());
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    Log.w(TAG, "No op code for " + permission.getName(), e);
+                }
+            }
+            permission.appOpCode = code;
+        }
+        return code;
+    }
+
+    /**
+     * Last access time of each granted permission's op, keyed by op code. Costs one IPC.
+     * Ops that were never used are left out.
+     */
+    SparseLongArray readLastAccessTimes(int uid, String packageName, List<AppInfo.PermissionDetail> permissions) {
+        SparseLongArray times = new SparseLongArray();
+        if (!isAvailable()) return times;
+
+        List<String> opNames = new ArrayList<>(permissions.size());
+        for (AppInfo.PermissionDetail detail : permissions) {
+            if (!detail.isGranted || opCodeOf(detail.permission) == OP_NONE) continue;
+            String op = AppOpsManager.permissionToOp(detail.name);
+            if (op != null && !opNames.contains(op)) opNames.add(op);
+        }
+        if (opNames.isEmpty()) return times;
+
+        try {
+            List<?> packageOps = (List<?>) getOpsForPackage.invoke(appOps, uid, packageName, opNames.toArray(new String[0]));
+            if (packageOps != null) {
+                for (Object ops : packageOps) {
+                    collect(ops, times);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.e(TAG, "Reading permission usage failed for " + packageName, e);
+        }
+        return times;
+    }
+
+    /**
+     * Last access times of every package on the device for the ops of all dangerous permissions
+     * seen so far plus the special ops, in one IPC. Returns {@link AppOpsSnapshot#EMPTY} if the
+     * query is unavailable or denied.
+     */
+    AppOpsSnapshot readAllPackages(PermissionRegistry registry) {
+        if (!isAvailable() || getPackagesForOps == null) return AppOpsSnapshot.EMPTY;
+
+        List<String> opNames = new ArrayList<>();
+        for (int id = 0, size = registry.size(); id < size; id++) {
+            PermissionRegistry.Entry entry = registry.get(id);
+            if (!entry.isDangerous() || opCodeOf(entry) == OP_NONE) continue;
+            String op = AppOpsManager.permissionToOp(entry.getName());
+            if (op != null && !opNames.contains(op)) opNames.add(op);
+        }
+        for (int i = 0; i < SPECIAL_OPS.length; i++) {
+            if (Build.VERSION.SDK_INT >= SPECIAL_OPS_MIN_SDK[i] && !opNames.contains(SPECIAL_OPS[i])) {
+                opNames.add(SPECIAL_OPS[i]);
+            }
+        }
+
+        try {
+            List<?> packages;
+            if (strOpToOp == null) {
+                packages = (List<?>) getPackagesForOps.invoke(appOps, (Object) opNames.toArray(new String[0]));
+            } else {
+                packages = (List<?>) getPackagesForOps.invoke(appOps, (Object) toOpCodes(opNames));
+            }
+
+            AppOpsSnapshot.Builder builder = new AppOpsSnapshot.Builder();
+            SparseLongArray times = new SparseLongArray();
+            if (packages != null) {
+                for (Object packageOps : packages) {
+                    int uid = (int) packageOpsGetUid.invoke(packageOps);
+                    times.clear();
+                    collect(packageOps, times);
+                    for (int i = 0; i < times.size(); i++) {
+                        builder.put(uid, times.keyAt(i), times.valueAt(i));
+                    }
+                }
+            }
+            return builder.build();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Typically a SecurityException: reading other apps' ops needs GET_APP_OPS_STATS
+            Log.w(TAG, "Device-wide AppOps query failed", e);
+            return AppOpsSnapshot.EMPTY;
+        }
+    }
+
+    private int[] toOpCodes(List<String> opNames) throws ReflectiveOperationException {
+        int[] codes = new int[opNames.size()];
+        int count = 0;
+        for (String name : opNames) {
+            int code = (int) strOpToOp.invoke(null, name);
+            if (code >= 0) codes[count++] = code;
+        }
+        return Arrays.copyOf(codes, count);
+    }
+
+    // Adds the last access time of every op entry in one PackageOps to times
+    private void collect(Object packageOps, SparseLongArray times) throws ReflectiveOperationException {
+        List<?> entries = (List<?>) packageOpsGetOps.invoke(packageOps);
+        if (entries == null) return;
+        for (Object entry : entries) {
+            long lastTime = (long) opEntryGetLastAccessTime.invoke(entry);
+            if (lastTime > 0) {
+                int op = (int) opEntryGetOp.invoke(entry);
+                times.put(op, Math.max(lastTime, times.get(op)));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.privacyscope;
+
+import android.util.SparseArray;
+import android.util.SparseLongArray;
+
+import java.util.Arrays;
+
+/**
+ * Immutable last-access times of every (uid, op) pair, from one device-wide AppOps query made
+ * by {@link AppOpsReader#readAllPackages}. Entries are stored in flat arrays sorted by uid and
+ * then op, so lookups are two binary searches and no further IPC.
+ */
+public final class AppOpsSnapshot {
+
+    static final AppOpsSnapshot EMPTY = new Builder().build();
+
+    private final int[] uids;
+    // Entries of uids[i] are at [starts[i], starts[i + 1]) in ops and times
+    private final int[] starts;
+    private final int[] ops;
+    private final long[] times;
+
+    private AppOpsSnapshot(int[] uids, int[] starts, int[] ops, long[] times) {
+        this.uids = uids;
+        this.starts = starts;
+        this.ops = ops;
+        this.times = times;
+    }
+
+    public boolean isEmpty() { return uids.length == 0; }
+
+    /** When {@code uid} last used {@code op}, or 0 if never or unknown. */
+    public long getLastAccess(int uid, int op) {
+        int u = Arrays.binarySearch(uids, uid);
+        if (u < 0) return 0;
+        int i = Arrays.binarySearch(ops, starts[u], starts[u + 1], op);
+        return i < 0 ? 0 : times[i];
+    }
+
+    /** The most recent access by {@code uid} to any of the queried ops, or 0. */
+    public long getLatestAccess(int uid) {
+        int u = Arrays.binarySearch(uids, uid);
+        if (u < 0) return 0;
+        long latest = 0;
+        for (int i = starts[u]; i < starts[u + 1]; i++) {
+            latest = Math.max(latest, times[i]);
+        }
+        return latest;
+    }
+
+    /** A copy of one uid's last-access times, keyed by AppOps op code. */
+    public SparseLongArray opsFor(int uid) {
+        SparseLongArray result = new SparseLongArray();
+        int u = Arrays.binarySearch(uids, uid);
+        if (u >= 0) {
+            for (int i = starts[u]; i < starts[u + 1]; i++) {
+                result.append(ops[i], times[i]);
+            }
+        }
+        return result;
+    }
+
+    // Collects entries in any order; SparseArray and SparseLongArray keep their keys sorted
+    static final class Builder {
+        private final SparseArray<SparseLongArray> byUid = new SparseArray<>();
+        private int entryCount;
+
+        void put(int uid, int op, long time) {
+            SparseLongArray uidOps = byUid.get(uid);
+            if (uidOps == null) {
+                uidOps = new SparseLongArray();
+                byUid.put(uid, uidOps);
+            }
+            if (uidOps.indexOfKey(op) < 0) entryCount++;
+            // A shared uid reports the op once per package; keep the latest
+            uidOps.put(op, Math.max(time, uidOps.get(op)));
+        }
+
+        AppOpsSnapshot build() {
+            int[] uids = new int[byUid.size()];
+            int[] starts = new int[uids.length + 1];
+            int[] ops = new int[entryCount];
+            long[] times = new long[entryCount];
+            int next = 0;
+            for (int u = 0; u < uids.length; u++) {
+                uids[u] = byUid.keyAt(u);
+                starts[u] = next;
+                SparseLongArray uidOps = byUid.valueAt(u);
+                for (int i = 0; i < uidOps.size(); i++) {
+                    ops[next] = uidOps.keyAt(i);
+                    times[next] = uidOps.valueAt(i);
+                    next++;
+                }
+            }
+            starts[uids.length] = next;
+            return new AppOpsSnapshot(uids, starts, ops, times);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.privacyscope;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, display-ready row for the app lists: the texts and chip color are worked out once
+ * when the row is built, not on every bind. Rows are compared by {@link #DIFF} on a background
+ * thread by the adapters' AsyncListDiffer, and {@link #id} is a stable id per package name.
+ */
+final class AppRow {
+
+    // Package name to stable id; ids are never reused within the process
+    private static final Map<String, Long> IDS = new HashMap<>();
+
+    static final DiffUtil.ItemCallback<AppRow> DIFF = new DiffUtil.ItemCallback<AppRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AppRow oldRow, @NonNull AppRow newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AppRow oldRow, @NonNull AppRow newRow) {
+            // Summaries are immutable and reused across scans for unchanged apps
+            return oldRow.app == newRow.app && oldRow.subtitle.equals(newRow.subtitle);
+        }
+    };
+
+    final AppSummary app;
+    final long id;
+    final String packageName;
+    final String title;
+    final String subtitle;
+    final AppInfo.RiskLevel riskLevel;
+    final String riskLabel;
+    final int riskColorRes;
+
+    AppRow(AppSummary app, String subtitle) {
+        this.app = app;
+        this.packageName = app.getPackageName();
+        this.id = idOf(packageName);
+        this.title = app.getAppName();
+        this.subtitle = subtitle;
+        this.riskLevel = app.getRiskLevel();
+        this.riskLabel = riskLevel.name();
+        this.riskColorRes = colorOf(riskLevel);
+    }
+
+    static synchronized long idOf(String packageName) {
+        Long id = IDS.get(packageName);
+        if (id == null) {
+            id = (long) IDS.size();
+            IDS.put(packageName, id);
+        }
+        return id;
+    }
+
+    static int colorOf(AppInfo.RiskLevel level) {
+        switch (level) {
+            case HIGH: return R.color.risk_high;
+            case MEDIUM: return R.color.risk_medium;
+            default: return R.color.risk_low;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.privacyscope;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Search index over the apps of one {@link ScanSnapshot}, for type-ahead search in the app list.
+ * Rows are the snapshot's apps in name order. Labels and package names are indexed by trigram,
+ * and risk level, trackers and granted permissions each map to a {@link Bits} set of rows, so
+ * a {@link Query} is a few word-wise ANDs plus a substring check of the remaining candidates.
+ * Immutable once built; {@link ScanRepository} builds it on the scan thread.
+ */
+public final class AppSearchIndex {
+
+    private static final String TAG = "PrivacyScope";
+    // Shorter words have no trigram and are checked against every candidate row instead
+    private static final int TRIGRAM = 3;
+
+    private final List<AppSummary> apps;
+    // Lower-case "label\npackage" per row
+    private final String[] searchText;
+    private final Map<Long, long[]> rowsByTrigram;
+    private final long[][] rowsByLevel;
+    private final SparseArray<long[]> rowsByTracker;
+    private final SparseArray<long[]> rowsByGrantedPermission;
+    private final long[] allRows;
+
+    /**
+     * A parsed search: plain words must all appear in the label or package name; {@code risk:},
+     * {@code tracker:} and {@code granted:} tokens add structured filters, e.g.
+     * {@code "maps risk:high tracker:admob granted:fine_location"}. A tracker or permission token
+     * matches every tracker (by name or category) or permission whose name contains its value,
+     * and an app passes if it has any of them.
+     */
+    public static final class Query {
+        final List<String> words = new ArrayList<>();
+        AppInfo.RiskLevel level;
+        // One set per token; an app must intersect each of them
+        final List<long[]> anyTrackers = new ArrayList<>();
+        final List<long[]> anyGranted = new ArrayList<>();
+
+        public static Query parse(String input, PermissionRegistry permissions, TrackerDatabase trackers) {
+            Query query = new Query();
+            for (String token : input.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (token.isEmpty()) continue;
+                int colon = token.indexOf(':');
+                String key = colon > 0 ? token.substring(0, colon) : "";
+                String value = colon > 0 ? token.substring(colon + 1) : token;
+                if (value.isEmpty()) continue;
+                switch (key) {
+                    case "risk":
+                        for (AppInfo.RiskLevel level : AppInfo.RiskLevel.values()) {
+                            if (level.name().toLowerCase(Locale.ROOT).startsWith(value)) query.level = level;
+                        }
+                        break;
+                    case "tracker":
+                        query.anyTrackers.add(trackersMatching(value, trackers));
+                        break;
+                    case "granted":
+                        query.anyGranted.add(permissionsMatching(value, permissions));
+                        break;
+                    default:
+                        query.words.add(token);
+                }
+            }
+            return query;
+        }
+
+        /** Replaces the risk level filter; null matches every level. */
+        public Query withLevel(AppInfo.RiskLevel level) {
+            this.level = level;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return words.isEmpty() && level == null && anyTrackers.isEmpty() && anyGranted.isEmpty();
+        }
+
+        /** Checks one app without an index, e.g. a row streamed in before the snapshot exists. */
+        public boolean matches(AppSummary app) {
+            if (level != null && app.getRiskLevel() != level) return false;
+            for (long[] trackerSet : anyTrackers) {
+                if (!Bits.intersects(app.getTrackerBits(), trackerSet)) return false;
+            }
+            for (long[] permissionSet : anyGranted) {
+                if (!Bits.intersects(app.getGrantedBits(), permissionSet)) return false;
+            }
+            String text = searchTextOf(app);
+            for (String word : words) {
+                if (!text.contains(word)) return false;
+            }
+            return true;
+        }
+
+        private static long[] trackersMatching(String value, TrackerDatabase trackers) {
+            Bits.Builder ids = new Bits.Builder();
+            for (int id = 0; id < trackers.size(); id++) {
+                if (trackers.getName(id).toLowerCase(Locale.ROOT).contains(value)
+                        || trackers.getCategory(id).toLowerCase(Locale.ROOT).contains(value)) {
+                    ids.add(id);
+                }
+            }
+            return ids.build();
+        }
+
+        private static long[] permissionsMatching(String value, PermissionRegistry permissions) {
+            Bits.Builder ids = new Bits.Builder();
+            for (int id = 0, size = permissions.size(); id < size; id++) {
+                PermissionRegistry.Entry entry = permissions.get(id);
+                if (entry.isDangerous() && entry.getName().toLowerCase(Locale.ROOT).contains(value)) {
+                    ids.add(id);
+                }
+            }
+            return ids.build();
+        }
+    }
+
+    AppSearchIndex(List<AppSummary> appsByName) {
+        long start = SystemClock.elapsedRealtime();
+        this.apps = appsByName;
+        int count = appsByName.size();
+        this.searchText = new String[count];
+
+        Map<Long, Bits.Builder> trigrams = new HashMap<>();
+        Bits.Builder[] levels = new Bits.Builder[AppInfo.RiskLevel.values().length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Bits.Builder();
+        }
+        SparseArray<Bits.Builder> trackers = new SparseArray<>();
+        SparseArray<Bits.Builder> granted = new SparseArray<>();
+        Bits.Builder all = new Bits.Builder();
+
+        for (int row = 0; row < count; row++) {
+            AppSummary app = appsByName.get(row);
+            String text = searchTextOf(app);
+            searchText[row] = text;
+            for (int i = 0; i + TRIGRAM <= text.length(); i++) {
+                Long key = trigramAt(text, i);
+                Bits.Builder rows = trigrams.get(key);
+                if (rows == null) {
+                    rows = new Bits.Builder();
+                    trigrams.put(key, rows);
+                }
+                rows.add(row);
+            }
+            levels[app.getRiskLevel().ordinal()].add(row);
+            addRow(trackers, app.getTrackerBits(), row);
+            addRow(granted, app.getGrantedBits(), row);
+            all.add(row);
+        }
+
+        this.rowsByTrigram = new HashMap<>(trigrams.size() * 2);
+        for (Map.Entry<Long, Bits.Builder> entry : trigrams.entrySet()) {
+            rowsByTrigram.put(entry.getKey(), entry.getValue().build());
+        }
+        this.rowsByLevel = new long[levels.length][];
+        for (int i = 0; i < levels.length; i++) {
+            rowsByLevel[i] = levels[i].build();
+        }
+        this.rowsByTracker = buildAll(trackers);
+        this.rowsByGrantedPermission = buildAll(granted);
+        this.allRows = all.build();
+        Log.d(TAG, "Indexed " + count + " apps (" + rowsByTrigram.size() + " trigrams) in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /** Apps matching {@code query}, in name order. */
+    public List<AppSummary> search(Query query) {
+        if (query.isEmpty()) return apps;
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        // Postings never reach past allRows, so two buffers of its length serve every filter below
+        long[] base = query.level == null ? allRows : rowsByLevel[query.level.ordinal()];
+        long[] candidates = Arrays.copyOf(base, allRows.length);
+        long[] union = new long[allRows.length];
+        // Structured filters first: each is a union of postings ANDed into the candidates
+        for (long[] trackerSet : query.anyTrackers) {
+            unionInto(union, rowsByTracker, trackerSet);
+            Bits.andInto(candidates, union);
+        }
+        for (long[] permissionSet : query.anyGranted) {
+            unionInto(union, rowsByGrantedPermission, permissionSet);
+            Bits.andInto(candidates, union);
+        }
+        // Trigrams narrow the candidates for longer words; the substring check below removes false hits
+        for (String word : query.words) {
+            for (int i = 0; i + TRIGRAM <= word.length() && !Bits.isEmpty(candidates); i++) {
+                long[] rows = rowsByTrigram.get(trigramAt(word, i));
+                if (rows == null) {
+                    Arrays.fill(candidates, 0);
+                } else {
+                    Bits.andInto(candidates, rows);
+                }
+            }
+        }
+
+        List<AppSummary> result = new ArrayList<>();
+        for (int row = Bits.nextSetBit(candidates, 0); row >= 0; row = Bits.nextSetBit(candidates, row + 1)) {
+            if (containsAll(searchText[row], query.words)) {
+                result.add(apps.get(row));
+            }
+        }
+        Log.v(TAG, "Search matched " + result.size() + " of " + apps.size() + " apps in "
+                + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + " us");
+        return Collections.unmodifiableList(result);
+    }
+
+    static String searchTextOf(AppSummary app) {
+        return (app.getAppName() + "\n" + app.getPackageName()).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsAll(String text, List<String> words) {
+        for (String word : words) {
+            if (!text.contains(word)) return false;
+        }
+        return true;
+    }
+
+    private static long trigramAt(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private static void addRow(SparseArray<Bits.Builder> postings, long[] ids, int row) {
+        for (int id = Bits.nextSetBit(ids, 0); id >= 0; id = Bits.nextSetBit(ids, id + 1)) {
+            Bits.Builder rows = postings.get(id);
+            if (rows == null) {
+                rows = new Bits.Builder();
+                postings.put(id, rows);
+            }
+            rows.add(row);
+        }
+    }
+
+    private static SparseArray<long[]> buildAll(SparseArray<Bits.Builder> builders) {
+        SparseArray<long[]> result = new SparseArray<>(builders.size());
+        for (int i = 0; i < builders.size(); i++) {
+            result.append(builders.keyAt(i), builders.valueAt(i).build());
+        }
+        return result;
+    }
+
+    // Sets rows to the rows having any of the ids in idSet
+    private static void unionInto(long[] rows, SparseArray<long[]> postings, long[] idSet) {
+        Arrays.fill(rows, 0);
+        for (int id = Bits.nextSetBit(idSet, 0); id >= 0; id = Bits.nextSetBit(idSet, id + 1)) {
+            long[] idRows = postings.get(id);
+            if (idRows != null) Bits.orInto(rows, idRows);
+        }
+    }
+}
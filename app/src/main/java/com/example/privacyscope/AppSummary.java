@@ -0,0 +1,118 @@
+package com.example.privacyscope;
+
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+/**
+ * Small immutable result of scanning one app: what the dashboard, the lists, comparisons and
+ * the summary report need. Permissions and trackers are kept as {@link Bits} sets over
+ * {@link PermissionRegistry} and {@link TrackerDatabase} ids rather than lists, and there is no reference
+ * to PackageManager. The full {@link AppInfo} is built on demand via
+ * {@link ScanRepository#loadDetails(String)}.
+ */
+public final class AppSummary {
+    private final String packageName;
+    private final int uid;
+    private final String appName;
+    private final long versionCode;
+    private final long lastUpdateTime;
+    private final long lastUsed;
+    private final int riskScore;
+    private final AppInfo.RiskLevel riskLevel;
+    private final int dangerousPermissionCount;
+    private final int grantedPermissionCount;
+    private final int trackerCount;
+    private final long[] permissionBits;
+    private final long[] grantedBits;
+    private final long[] trackerBits;
+
+    public AppSummary(PackageInfo packageInfo, PackageManager pm, PermissionRegistry permissions,
+                      TrackerDatabase trackers, RiskScorer scorer) {
+        this.packageName = packageInfo.packageName;
+        this.uid = packageInfo.applicationInfo.uid;
+        this.appName = packageInfo.applicationInfo.loadLabel(pm).toString();
+        this.versionCode = PackageInfoCompat.getLongVersionCode(packageInfo);
+        this.lastUpdateTime = packageInfo.lastUpdateTime;
+        // Filled in with usage recency by the repository's batch pass
+        this.lastUsed = 0;
+
+        Bits.Builder requested = new Bits.Builder();
+        Bits.Builder granted = new Bits.Builder();
+        if (packageInfo.requestedPermissions != null) {
+            for (String permission : packageInfo.requestedPermissions) {
+                PermissionRegistry.Entry entry = permissions.intern(permission);
+                if (entry.isDangerous()) {
+                    requested.add(entry.getId());
+                    if (pm.checkPermission(permission, packageName) == PackageManager.PERMISSION_GRANTED) {
+                        granted.add(entry.getId());
+                    }
+                }
+            }
+        }
+        this.permissionBits = requested.build();
+        this.grantedBits = granted.build();
+        this.trackerBits = trackers.detect(packageInfo);
+        this.dangerousPermissionCount = Bits.count(permissionBits);
+        this.grantedPermissionCount = Bits.count(grantedBits);
+        this.trackerCount = Bits.count(trackerBits);
+        // Usage recency is applied later by the repository's batch pass over the whole snapshot
+        this.riskScore = scorer.score(permissionBits, grantedBits, trackerBits, 0);
+        this.riskLevel = RiskScorer.levelOf(riskScore);
+    }
+
+    // Rebuilds a summary restored from ScanCache
+    AppSummary(String packageName, int uid, String appName, long versionCode, long lastUpdateTime, long lastUsed,
+               int riskScore, AppInfo.RiskLevel riskLevel, long[] permissionBits, long[] grantedBits,
+               long[] trackerBits) {
+        this.packageName = packageName;
+        this.uid = uid;
+        this.appName = appName;
+        this.versionCode = versionCode;
+        this.lastUpdateTime = lastUpdateTime;
+        this.lastUsed = lastUsed;
+        this.riskScore = riskScore;
+        this.riskLevel = riskLevel;
+        this.permissionBits = permissionBits;
+        this.grantedBits = grantedBits;
+        this.trackerBits = trackerBits;
+        this.dangerousPermissionCount = Bits.count(permissionBits);
+        this.grantedPermissionCount = Bits.count(grantedBits);
+        this.trackerCount = Bits.count(trackerBits);
+    }
+
+    // Same app with a score from RiskScorer#scoreAll and the last-used time of the same pass
+    AppSummary withRiskScore(int score, long lastUsed) {
+        return new AppSummary(packageName, uid, appName, versionCode, lastUpdateTime, lastUsed, score,
+                RiskScorer.levelOf(score), permissionBits, grantedBits, trackerBits);
+    }
+
+    public String getPackageName() { return packageName; }
+    public int getUid() { return uid; }
+    public String getAppName() { return appName; }
+    public long getVersionCode() { return versionCode; }
+    public long getLastUpdateTime() { return lastUpdateTime; }
+    /** Last time the app was in the foreground as of the scan, or 0 if unknown or not in the past 30 days. */
+    public long getLastUsed() { return lastUsed; }
+    public int getRiskScore() { return riskScore; }
+    public AppInfo.RiskLevel getRiskLevel() { return riskLevel; }
+    public int getDangerousPermissionCount() { return dangerousPermissionCount; }
+    public int getGrantedPermissionCount() { return grantedPermissionCount; }
+    public int getTrackerCount() { return trackerCount; }
+
+    // --- Bitsets; shared arrays, callers must not modify them ---
+    public long[] getPermissionBits() { return permissionBits; }
+    public long[] getGrantedBits() { return grantedBits; }
+    public long[] getTrackerBits() { return trackerBits; }
+
+    // True if this summary was built from the same install of the package (no update since)
+    public boolean isSameBuild(PackageInfo packageInfo) {
+        return versionCode == PackageInfoCompat.getLongVersionCode(packageInfo)
+                && lastUpdateTime == packageInfo.lastUpdateTime;
+    }
+
+    public boolean isSameBuild(AppInfo details) {
+        return versionCode == details.getVersionCode() && lastUpdateTime == details.getLastUpdateTime();
+    }
+}
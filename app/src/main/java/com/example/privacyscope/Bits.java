@@ -0,0 +1,113 @@
+package com.example.privacyscope;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on {@code long[]} bitsets of interned ids (see {@link PermissionRegistry} and
+ * {@link TrackerDatabase}). Bit {@code i} of word {@code i >> 6} is set when id
+ * {@code i} is in the set. Arrays may have different lengths; missing words count as zero.
+ * The queries never allocate. {@link #andNot} returns a new array; {@link #andInto} and
+ * {@link #orInto} update their first argument instead, for loops that reuse one buffer, such
+ * as the per-keystroke search.
+ */
+public final class Bits {
+
+    public static final long[] EMPTY = new long[0];
+
+    private Bits() {
+    }
+
+    /** Mutable builder; call {@link #build()} once all ids are added. */
+    public static final class Builder {
+        private long[] words = new long[1];
+        private int maxWord = -1;
+
+        public Builder add(int id) {
+            int word = id >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+            }
+            words[word] |= 1L << id;
+            maxWord = Math.max(maxWord, word);
+            return this;
+        }
+
+        public long[] build() {
+            return maxWord < 0 ? EMPTY : Arrays.copyOf(words, maxWord + 1);
+        }
+    }
+
+    public static boolean contains(long[] bits, int id) {
+        int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    public static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static boolean intersects(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if ((a[i] & b[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /** True if every id in {@code b} is also in {@code a}. */
+    public static boolean containsAll(long[] a, long[] b) {
+        for (int i = 0; i < b.length; i++) {
+            long word = i < a.length ? a[i] : 0;
+            if ((b[i] & ~word) != 0) return false;
+        }
+        return true;
+    }
+
+    /** Returns the first id at or after {@code from}, or -1. Iterate with {@code nextSetBit(bits, id + 1)}. */
+    public static int nextSetBit(long[] bits, int from) {
+        int word = from >>> 6;
+        if (word >= bits.length) return -1;
+        long remaining = bits[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) return (word << 6) + Long.numberOfTrailingZeros(remaining);
+            if (++word >= bits.length) return -1;
+            remaining = bits[word];
+        }
+    }
+
+    /** Keeps only the ids of {@code target} that are also in {@code b}. */
+    public static void andInto(long[] target, long[] b) {
+        int n = Math.min(target.length, b.length);
+        for (int i = 0; i < n; i++) {
+            target[i] &= b[i];
+        }
+        Arrays.fill(target, n, target.length, 0);
+    }
+
+    /** Adds the ids of {@code b} to {@code target}, which must be at least as long as {@code b}. */
+    public static void orInto(long[] target, long[] b) {
+        for (int i = 0; i < b.length; i++) {
+            target[i] |= b[i];
+        }
+    }
+
+    public static long[] andNot(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length);
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            result[i] &= ~b[i];
+        }
+        return result;
+    }
+}
@@ -2,8 +2,6 @@ package com.example.privacyscope;
 
 import android.app.Dialog;
 import android.content.Intent;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.view.View;
 import android.view.Window;
@@ -25,10 +23,7 @@ import com.google.android.material.card.MaterialCardView;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 public class ComparisonActivity extends AppCompatActivity {
 
@@ -50,8 +45,11 @@ public class ComparisonActivity extends AppCompatActivity {
     private LinearLayout app1TrackersLayout, app2TrackersLayout;
 
     // Data
-    private final List<AppInfo> allApps = new ArrayList<>();
-    private AppInfo appInfo1, appInfo2;
+    // The snapshot's immutable list, so open dialogs never see it change under them
+    private List<AppSummary> allApps = Collections.emptyList();
+    private AppSummary selectedApp1, selectedApp2;
+    private ScanRepository scanRepository;
+    private final ScanRepository.Listener scanListener = this::onAppsLoaded;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +62,12 @@ public class ComparisonActivity extends AppCompatActivity {
         loadAllApps();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scanRepository.removeListener(scanListener);
+    }
+
     private void initializeViews() {
         // Selection
         selectApp1Button = findViewById(R.id.selectApp1Button);
@@ -101,7 +105,7 @@ public class ComparisonActivity extends AppCompatActivity {
         compareNewButton.setOnClickListener(v -> resetComparisonView());
 
         compareButton.setOnClickListener(v -> {
-            if (appInfo1 != null && appInfo2 != null) {
+            if (selectedApp1 != null && selectedApp2 != null) {
                 selectionLayout.setVisibility(View.GONE);
                 comparisonResultLayout.setVisibility(View.VISIBLE);
                 performComparison();
@@ -116,22 +120,16 @@ public class ComparisonActivity extends AppCompatActivity {
         selectApp1Button.setEnabled(false);
         selectApp2Button.setEnabled(false);
 
-        new Thread(() -> {
-            PackageManager pm = getPackageManager();
-            List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_PERMISSIONS | PackageManager.GET_RECEIVERS);
-            allApps.clear();
-            for (PackageInfo packageInfo : packages) {
-                if ((packageInfo.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    allApps.add(new AppInfo(packageInfo, pm));
-                }
-            }
-            Collections.sort(allApps, (a1, a2) -> a1.getAppName().compareToIgnoreCase(a2.getAppName()));
-            runOnUiThread(() -> {
-                loadingIndicator.setVisibility(View.GONE);
-                selectApp1Button.setEnabled(true);
-                selectApp2Button.setEnabled(true);
-            });
-        }).start();
+        scanRepository = ScanRepository.getInstance(this);
+        scanRepository.addListener(scanListener);
+        scanRepository.ensureFresh();
+    }
+
+    private void onAppsLoaded(ScanSnapshot snapshot) {
+        allApps = snapshot.getAppsByName();
+        loadingIndicator.setVisibility(View.GONE);
+        selectApp1Button.setEnabled(true);
+        selectApp2Button.setEnabled(true);
     }
 
     private void showAppSelectionDialog(int requestCode) {
@@ -145,69 +143,83 @@ public class ComparisonActivity extends AppCompatActivity {
 
         RecyclerView recyclerView = dialog.findViewById(R.id.dialogRecyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        AppDialogAdapter dialogAdapter = new AppDialogAdapter(allApps, app -> {
+        AppDialogAdapter dialogAdapter = new AppDialogAdapter(app -> {
             if (requestCode == 1) {
-                appInfo1 = app;
+                selectedApp1 = app;
                 app1Name.setText(app.getAppName());
-                app1Icon.setImageDrawable(app.getIcon());
+                IconLoader.getInstance(this).load(app1Icon, app.getPackageName());
                 app1Icon.setImageTintList(null);
             } else {
-                appInfo2 = app;
+                selectedApp2 = app;
                 app2Name.setText(app.getAppName());
-                app2Icon.setImageDrawable(app.getIcon());
+                IconLoader.getInstance(this).load(app2Icon, app.getPackageName());
                 app2Icon.setImageTintList(null);
             }
             dialog.dismiss();
         });
+        dialogAdapter.submitApps(allApps);
         recyclerView.setAdapter(dialogAdapter);
         dialog.show();
     }
 
+    // Summaries carry permission and tracker bitsets, so no details need to be loaded to compare
     private void performComparison() {
         // Set header info
-        app1ResultIcon.setImageDrawable(appInfo1.getIcon());
-        app2ResultIcon.setImageDrawable(appInfo2.getIcon());
-        app1ResultName.setText(appInfo1.getAppName());
-        app2ResultName.setText(appInfo2.getAppName());
-        app1ResultScore.setText("Risk: " + appInfo1.getRiskScore());
-        app2ResultScore.setText("Risk: " + appInfo2.getRiskScore());
+        IconLoader.getInstance(this).load(app1ResultIcon, selectedApp1.getPackageName());
+        IconLoader.getInstance(this).load(app2ResultIcon, selectedApp2.getPackageName());
+        app1ResultName.setText(selectedApp1.getAppName());
+        app2ResultName.setText(selectedApp2.getAppName());
+        app1ResultScore.setText("Risk: " + selectedApp1.getRiskScore() + lastAccessLine(selectedApp1));
+        app2ResultScore.setText("Risk: " + selectedApp2.getRiskScore() + lastAccessLine(selectedApp2));
 
         // Compare permissions
-        // Compare permissions
-        Set<String> app1Perms = appInfo1.getDangerousPermissions().stream()
-                .map(detail -> detail.name)
-                .collect(Collectors.toSet());
-
-        Set<String> app2Perms = appInfo2.getDangerousPermissions().stream()
-                .map(detail -> detail.name)
-                .collect(Collectors.toSet());compareAndDisplayLists(app1PermissionsLayout, app1Perms, app2Perms);
-        compareAndDisplayLists(app2PermissionsLayout, app2Perms, app1Perms);
+        long[] app1Perms = selectedApp1.getPermissionBits();
+        long[] app2Perms = selectedApp2.getPermissionBits();
+        compareAndDisplayLists(app1PermissionsLayout, app1Perms, app2Perms, false);
+        compareAndDisplayLists(app2PermissionsLayout, app2Perms, app1Perms, false);
 
         // Compare trackers
-        Set<String> app1Trackers = new HashSet<>(appInfo1.getDetectedTrackers());
-        Set<String> app2Trackers = new HashSet<>(appInfo2.getDetectedTrackers());
-        compareAndDisplayLists(app1TrackersLayout, app1Trackers, app2Trackers);
-        compareAndDisplayLists(app2TrackersLayout, app2Trackers, app1Trackers);
+        long[] app1Trackers = selectedApp1.getTrackerBits();
+        long[] app2Trackers = selectedApp2.getTrackerBits();
+        compareAndDisplayLists(app1TrackersLayout, app1Trackers, app2Trackers, true);
+        compareAndDisplayLists(app2TrackersLayout, app2Trackers, app1Trackers, true);
 
         // Set recommendation
-        if (appInfo1.getRiskScore() < appInfo2.getRiskScore()) {
-            recommendationText.setText(appInfo1.getAppName() + " is safer than " + appInfo2.getAppName());
-        } else if (appInfo2.getRiskScore() < appInfo1.getRiskScore()) {
-            recommendationText.setText(appInfo2.getAppName() + " is safer than " + appInfo1.getAppName());
+        if (selectedApp1.getRiskScore() < selectedApp2.getRiskScore()) {
+            recommendationText.setText(selectedApp1.getAppName() + " is safer than " + selectedApp2.getAppName());
+        } else if (selectedApp2.getRiskScore() < selectedApp1.getRiskScore()) {
+            recommendationText.setText(selectedApp2.getAppName() + " is safer than " + selectedApp1.getAppName());
         } else {
             recommendationText.setText("Both apps have a similar risk profile.");
         }
     }
 
-    private void compareAndDisplayLists(LinearLayout layout, Set<String> list1, Set<String> list2) {
+    // Empty when the device-wide AppOps query isn't permitted
+    private String lastAccessLine(AppSummary app) {
+        AppOpsSnapshot appOps = scanRepository.getAppOps();
+        if (appOps.isEmpty()) return "";
+        long lastAccess = appOps.getLatestAccess(app.getUid());
+        return "\nLast sensitive access: " + (lastAccess > 0 ? AppDetailActivity.formatTimeAgo(lastAccess) : "Never");
+    }
+
+    // Lists every id in bits1 by name, highlighting the ones bits2 doesn't have
+    private void compareAndDisplayLists(LinearLayout layout, long[] bits1, long[] bits2, boolean trackers) {
         layout.removeAllViews();
-        List<String> sortedList = new ArrayList<>(list1);
-        Collections.sort(sortedList);
+        PermissionRegistry registry = PermissionRegistry.getInstance(this);
+        TrackerDatabase trackerDatabase = TrackerDatabase.getInstance(this);
+        List<String> names = new ArrayList<>(Bits.count(bits1));
+        List<Boolean> unique = new ArrayList<>(names.size());
+        for (int id = Bits.nextSetBit(bits1, 0); id >= 0; id = Bits.nextSetBit(bits1, id + 1)) {
+            String name = trackers ? trackerDatabase.getName(id) : registry.get(id).getShortName();
+            // Keep the rows alphabetical
+            int index = 0;
+            while (index < names.size() && names.get(index).compareTo(name) < 0) index++;
+            names.add(index, name);
+            unique.add(index, !Bits.contains(bits2, id));
+        }
 
-        for (String item : sortedList) {
-            boolean isUnique = !list2.contains(item);
-            String displayName = item.contains(".") ? item.substring(item.lastIndexOf('.') + 1) : item;
-            addTextViewToList(layout, displayName, isUnique);
+        for (int i = 0; i < names.size(); i++) {
+            addTextViewToList(layout, names.get(i), unique.get(i));
         }
     }
 
@@ -229,11 +241,13 @@ public class ComparisonActivity extends AppCompatActivity {
         comparisonResultLayout.setVisibility(View.GONE);
         selectionLayout.setVisibility(View.VISIBLE);
 
-        appInfo1 = null;
-        appInfo2 = null;
+        selectedApp1 = null;
+        selectedApp2 = null;
 
         app1Name.setText("Select App 1");
         app2Name.setText("Select App 2");
+        IconLoader.getInstance(this).cancel(app1Icon);
+        IconLoader.getInstance(this).cancel(app2Icon);
         app1Icon.setImageResource(R.drawable.ic_add);
         app2Icon.setImageResource(R.drawable.ic_add);
         app1Icon.setImageTintList(ContextCompat.getColorStateList(this, R.color.risk_low));
@@ -0,0 +1,86 @@
+package com.example.privacyscope;
+
+import android.annotation.SuppressLint;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Warms {@link ScanRepository}'s detail cache for app rows the user is likely to open: rows
+ * that stay on screen once a list stops scrolling, and a row as soon as it is pressed, ahead
+ * of the click. Loads run on the repository's prefetch threads.
+ */
+final class DetailPrefetcher {
+
+    // How long a list must sit still before its visible rows count as settled
+    private static final long SETTLE_DELAY_MS = 300;
+    private static final int MAX_SETTLED_ROWS = 6;
+
+    private DetailPrefetcher() {
+    }
+
+    /** Prefetches the visible rows of {@code list} whenever it settles, after scrolling or new data. */
+    static void attach(RecyclerView list, ListAdapter<AppRow, ?> adapter) {
+        ScanRepository repository = ScanRepository.getInstance(list.getContext());
+        Runnable prefetchVisible = () -> {
+            if (!(list.getLayoutManager() instanceof LinearLayoutManager)) return;
+            LinearLayoutManager layout = (LinearLayoutManager) list.getLayoutManager();
+            List<AppRow> rows = adapter.getCurrentList();
+            int first = layout.findFirstVisibleItemPosition();
+            int last = Math.min(layout.findLastVisibleItemPosition(), first + MAX_SETTLED_ROWS - 1);
+            for (int i = Math.max(first, 0); i <= last && i < rows.size(); i++) {
+                repository.prefetchDetails(rows.get(i).packageName);
+            }
+        };
+        list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                list.removeCallbacks(prefetchVisible);
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    list.postDelayed(prefetchVisible, SETTLE_DELAY_MS);
+                }
+            }
+        });
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                reschedule();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                reschedule();
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                reschedule();
+            }
+
+            private void reschedule() {
+                list.removeCallbacks(prefetchVisible);
+                if (list.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+                    list.postDelayed(prefetchVisible, SETTLE_DELAY_MS);
+                }
+            }
+        });
+    }
+
+    /** Starts loading a row's details on touch down, before the click that opens them. */
+    @SuppressLint("ClickableViewAccessibility")
+    static void prefetchOnPress(View itemView, String packageName) {
+        // Returns false so the press still reaches the click listener
+        itemView.setOnTouchListener((v, event) -> {
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                ScanRepository.getInstance(v.getContext()).prefetchDetails(packageName);
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.privacyscope;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deep tracker scan that looks inside an APK's code instead of its manifest, for SDKs that
+ * register no components.
+ *
+ * <p>The zip central directory is read to find the {@code classes*.dex} entries, and each dex
+ * stored uncompressed is memory-mapped in place. A dex lists its type descriptors
+ * ("Lcom/example/Foo;") in sorted order, so each tracker prefix is found with a binary search
+ * over the type-id table. Only the pages holding the probed ids and strings are read, never
+ * the whole file. Compressed dex entries would have to be inflated in full, so they are
+ * skipped and counted. Each APK gets a budget of string lookups; when it runs out, the scan
+ * stops with what it has found so far. The budget is a count rather than a time, so the same
+ * APK always yields the same trackers however busy the device is.
+ */
+final class DexScanner {
+
+    private static final String TAG = "PrivacyScope";
+
+    // A lookup reads at most three pages: the type id, the string id and the string data
+    private static final int MAX_LOOKUPS_PER_APK = 64 * 1024;
+
+    // --- Zip layout ---
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_ZIP_COMMENT = 0xFFFF;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int METHOD_STORED = 0;
+
+    // --- Dex header offsets ---
+    private static final int DEX_HEADER_SIZE = 0x70;
+    private static final int DEX_STRING_IDS_SIZE = 0x38;
+    private static final int DEX_STRING_IDS_OFF = 0x3C;
+    private static final int DEX_TYPE_IDS_SIZE = 0x40;
+    private static final int DEX_TYPE_IDS_OFF = 0x44;
+
+    private final TrackerDatabase trackers;
+    // Signature prefixes as sorted type descriptor prefixes, e.g. "Lcom/appsflyer/"
+    private byte[][] descriptors;
+    private int[] descriptorTrackers;
+
+    private final AtomicLong scannedApks = new AtomicLong();
+    private final AtomicLong scannedDexFiles = new AtomicLong();
+    private final AtomicLong skippedDexFiles = new AtomicLong();
+    private final AtomicLong overBudgetApks = new AtomicLong();
+    private final AtomicLong scanMicros = new AtomicLong();
+    private final AtomicLong slowestMicros = new AtomicLong();
+
+    DexScanner(TrackerDatabase trackers) {
+        this.trackers = trackers;
+    }
+
+    /** Adds every tracker whose classes appear in the dex files of {@code apkPath} to {@code found}. */
+    void scan(String apkPath, Bits.Builder found) {
+        prepareDescriptors();
+        long start = SystemClock.elapsedRealtimeNanos();
+        Budget budget = new Budget();
+        int dexCount = 0;
+        try (RandomAccessFile file = new RandomAccessFile(apkPath, "r");
+             FileChannel channel = file.getChannel()) {
+            for (long[] entry : findStoredDexEntries(channel)) {
+                if (budget.exhausted()) break;
+                MappedByteBuffer dex = channel.map(FileChannel.MapMode.READ_ONLY, entry[0], entry[1]);
+                dex.order(ByteOrder.LITTLE_ENDIAN);
+                scanDex(dex, found, budget);
+                dexCount++;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or malformed APKs just contribute nothing beyond the manifest scan
+            Log.w(TAG, "Deep scan failed for " + apkPath + ": " + e);
+        }
+
+        long micros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        scannedApks.incrementAndGet();
+        scannedDexFiles.addAndGet(dexCount);
+        scanMicros.addAndGet(micros);
+        long slowest;
+        while (micros > (slowest = slowestMicros.get()) && !slowestMicros.compareAndSet(slowest, micros)) {
+            // another worker raced us to a new maximum; retry against it
+        }
+        if (budget.exhausted()) overBudgetApks.incrementAndGet();
+        Log.v(TAG, "Deep scan of " + apkPath + ": " + dexCount + " dex, " + budget.lookups + " lookups, "
+                + micros + " us" + (budget.exhausted() ? " (budget exhausted)" : ""));
+    }
+
+    /** Returns a one-line summary of deep-scan timing since the last call, and resets it. */
+    String takeTimingSummary() {
+        long apks = scannedApks.getAndSet(0);
+        long micros = scanMicros.getAndSet(0);
+        return String.format(Locale.US, "deep-scanned %d APKs (%d dex, %d compressed skipped) in %.1f ms, "
+                        + "slowest %.1f ms, %d over budget",
+                apks, scannedDexFiles.getAndSet(0), skippedDexFiles.getAndSet(0), micros / 1000.0,
+                slowestMicros.getAndSet(0) / 1000.0, overBudgetApks.getAndSet(0));
+    }
+
+    // --- Zip ---
+
+    // Returns {offset, length} of each classes*.dex stored without compression
+    private List<long[]> findStoredDexEntries(FileChannel channel) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        long size = channel.size();
+        if (size < EOCD_SIZE) return entries;
+
+        // The end-of-central-directory record sits in the last 22 bytes plus an optional comment
+        int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_ZIP_COMMENT);
+        MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - tailSize, tailSize);
+        tail.order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) throw new IOException("No end of central directory");
+        long centralSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long centralOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (centralOffset + centralSize > size) throw new IOException("Zip64 or truncated archive");
+
+        MappedByteBuffer central = channel.map(FileChannel.MapMode.READ_ONLY, centralOffset, centralSize);
+        central.order(ByteOrder.LITTLE_ENDIAN);
+        int pos = 0;
+        while (pos + CENTRAL_HEADER_SIZE <= centralSize && central.getInt(pos) == CENTRAL_SIGNATURE) {
+            int method = central.getShort(pos + 10) & 0xFFFF;
+            long uncompressedSize = central.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = central.getShort(pos + 28) & 0xFFFF;
+            int extraLength = central.getShort(pos + 30) & 0xFFFF;
+            int commentLength = central.getShort(pos + 32) & 0xFFFF;
+            long localOffset = central.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            if (isDexName(central, pos + CENTRAL_HEADER_SIZE, nameLength)) {
+                if (method == METHOD_STORED && uncompressedSize <= Integer.MAX_VALUE) {
+                    entries.add(new long[]{dataOffset(channel, localOffset), uncompressedSize});
+                } else {
+                    skippedDexFiles.incrementAndGet();
+                }
+            }
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    // Matches "classes.dex", "classes2.dex", ... at the root of the archive
+    private static boolean isDexName(MappedByteBuffer buffer, int offset, int length) {
+        if (length < 11 || length > 16) return false;
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = buffer.get(offset + i);
+        }
+        String value = new String(name, StandardCharsets.US_ASCII);
+        if (!value.startsWith("classes") || !value.endsWith(".dex")) return false;
+        for (int i = 7; i < length - 4; i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // The local header's name and extra fields may differ in length from the central directory's
+    private static long dataOffset(FileChannel channel, long localOffset) throws IOException {
+        MappedByteBuffer local = channel.map(FileChannel.MapMode.READ_ONLY, localOffset, LOCAL_HEADER_SIZE);
+        local.order(ByteOrder.LITTLE_ENDIAN);
+        if (local.getInt(0) != LOCAL_SIGNATURE) throw new IOException("Bad local header");
+        int nameLength = local.getShort(26) & 0xFFFF;
+        int extraLength = local.getShort(28) & 0xFFFF;
+        return localOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    // --- Dex ---
+
+    private void scanDex(MappedByteBuffer dex, Bits.Builder found, Budget budget) {
+        if (dex.capacity() < DEX_HEADER_SIZE || dex.get(0) != 'd' || dex.get(1) != 'e' || dex.get(2) != 'x') return;
+        int stringIdsSize = dex.getInt(DEX_STRING_IDS_SIZE);
+        int stringIdsOff = dex.getInt(DEX_STRING_IDS_OFF);
+        int typeIdsSize = dex.getInt(DEX_TYPE_IDS_SIZE);
+        int typeIdsOff = dex.getInt(DEX_TYPE_IDS_OFF);
+        if (typeIdsSize <= 0 || typeIdsOff < 0 || (long) typeIdsOff + 4L * typeIdsSize > dex.capacity()
+                || stringIdsOff < 0 || (long) stringIdsOff + 4L * stringIdsSize > dex.capacity()) {
+            return;
+        }
+        DexTypes types = new DexTypes(dex, stringIdsOff, stringIdsSize, typeIdsOff, budget);
+
+        // Descriptors are sorted too, so each search can start where the previous one ended
+        int low = 0;
+        for (int s = 0; s < descriptors.length && !budget.exhausted(); s++) {
+            byte[] prefix = descriptors[s];
+            low = types.lowerBound(prefix, low, typeIdsSize);
+            if (low < typeIdsSize && types.compare(low, prefix) == 0) {
+                found.add(descriptorTrackers[s]);
+            }
+        }
+    }
+
+    // Views the type-id table of one mapped dex as a sorted array of descriptors
+    private static final class DexTypes {
+        private final MappedByteBuffer dex;
+        private final int stringIdsOff;
+        private final int stringIdsSize;
+        private final int typeIdsOff;
+        private final Budget budget;
+
+        DexTypes(MappedByteBuffer dex, int stringIdsOff, int stringIdsSize, int typeIdsOff, Budget budget) {
+            this.dex = dex;
+            this.stringIdsOff = stringIdsOff;
+            this.stringIdsSize = stringIdsSize;
+            this.typeIdsOff = typeIdsOff;
+            this.budget = budget;
+        }
+
+        // First type index in [from, size) whose descriptor is >= prefix
+        int lowerBound(byte[] prefix, int from, int size) {
+            int low = from;
+            int high = size;
+            while (low < high && !budget.exhausted()) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Compares the descriptor of type {@code index} with {@code prefix}; 0 if it starts with it
+        int compare(int index, byte[] prefix) {
+            budget.lookups++;
+            int stringIndex = dex.getInt(typeIdsOff + 4 * index);
+            if (stringIndex < 0 || stringIndex >= stringIdsSize) return 1;
+            int pos = dex.getInt(stringIdsOff + 4 * stringIndex);
+            // Skip the uleb128 UTF-16 length that precedes the MUTF-8 bytes
+            while ((dex.get(pos++) & 0x80) != 0) {
+                // continuation byte
+            }
+            for (byte expected : prefix) {
+                int actual = dex.get(pos++) & 0xFF;
+                if (actual == 0) return -1;
+                if (actual != (expected & 0xFF)) return actual < (expected & 0xFF) ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    private static final class Budget {
+        int lookups;
+
+        boolean exhausted() {
+            return lookups >= MAX_LOOKUPS_PER_APK;
+        }
+    }
+
+    private synchronized void prepareDescriptors() {
+        if (descriptors != null) return;
+        int count = trackers.getSignatureCount();
+        Integer[] order = new Integer[count];
+        byte[][] prefixes = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            prefixes[i] = ("L" + trackers.getSignaturePrefix(i).replace('.', '/')).getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(prefixes[a], prefixes[b]));
+        byte[][] sorted = new byte[count][];
+        int[] sortedTrackers = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = prefixes[order[i]];
+            sortedTrackers[i] = trackers.getSignatureTracker(order[i]);
+        }
+        descriptorTrackers = sortedTrackers;
+        descriptors = sorted;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) return diff;
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.privacyscope;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads app icons on demand for list rows and headers.
+ * Icons are decoded off the main thread at the size of the target view and kept in a memory
+ * LRU cache bounded by bytes. Binding a recycled view cancels the load it was waiting for.
+ * {@link #load} and {@link #cancel} must be called on the main thread.
+ */
+public final class IconLoader {
+
+    private static final String TAG = "PrivacyScope";
+    private static final int DEFAULT_SIZE_DP = 48;
+
+    private static IconLoader instance;
+
+    private final PackageManager pm;
+    private final LruCache<String, Bitmap> cache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "IconLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int defaultSizePx;
+
+    private IconLoader(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.pm = appContext.getPackageManager();
+        this.defaultSizePx = Math.round(DEFAULT_SIZE_DP * appContext.getResources().getDisplayMetrics().density);
+
+        // An eighth of the per-app heap is plenty for a screenful or two of row-sized icons
+        ActivityManager am = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int budgetBytes = am.getMemoryClass() * 1024 * 1024 / 8;
+        this.cache = new LruCache<String, Bitmap>(budgetBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    public static synchronized IconLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new IconLoader(context);
+        }
+        return instance;
+    }
+
+    /** Shows the icon of {@code packageName} in {@code view}, sized to the view's layout width. */
+    public void load(ImageView view, String packageName) {
+        int sizePx = targetSize(view);
+        String key = packageName + "@" + sizePx;
+        cancel(view);
+
+        Bitmap cached = cache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        view.setTag(R.id.icon_loader_request, key);
+        Future<?> task = executor.submit(() -> {
+            Bitmap bitmap = decodeIcon(packageName, sizePx);
+            if (bitmap == null) return;
+            cache.put(key, bitmap);
+            mainHandler.post(() -> {
+                // The view may have been rebound to another app while this was decoding
+                if (key.equals(view.getTag(R.id.icon_loader_request))) {
+                    view.setImageBitmap(bitmap);
+                    view.setTag(R.id.icon_loader_request, null);
+                    view.setTag(R.id.icon_loader_task, null);
+                }
+            });
+        });
+        view.setTag(R.id.icon_loader_task, task);
+    }
+
+    /** Drops the pending load for {@code view}, if any. Call from onViewRecycled. */
+    public void cancel(ImageView view) {
+        Object task = view.getTag(R.id.icon_loader_task);
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+        view.setTag(R.id.icon_loader_task, null);
+        view.setTag(R.id.icon_loader_request, null);
+    }
+
+    private int targetSize(ImageView view) {
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        return params != null && params.width > 0 ? params.width : defaultSizePx;
+    }
+
+    private Bitmap decodeIcon(String packageName, int sizePx) {
+        try {
+            ApplicationInfo appInfo = pm.getApplicationInfo(packageName, 0);
+            Bitmap bitmap = decodeSampled(appInfo, sizePx);
+            if (bitmap == null) {
+                // Adaptive and vector icons are not bitmaps; draw them straight at the target size
+                bitmap = render(pm.getApplicationIcon(appInfo), sizePx);
+            }
+            return bitmap;
+        } catch (PackageManager.NameNotFoundException e) {
+            return render(pm.getDefaultActivityIcon(), sizePx);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to load icon for " + packageName, e);
+            return null;
+        }
+    }
+
+    // Decodes a bitmap icon with inSampleSize so the full-resolution image is never allocated
+    private Bitmap decodeSampled(ApplicationInfo appInfo, int sizePx) throws PackageManager.NameNotFoundException {
+        if (appInfo.icon == 0) return null;
+        Resources resources = pm.getResourcesForApplication(appInfo);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, appInfo.icon, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= sizePx && options.outHeight / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, appInfo.icon, options);
+        if (bitmap == null || (bitmap.getWidth() == sizePx && bitmap.getHeight() == sizePx)) return bitmap;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, sizePx, sizePx, true);
+        if (scaled != bitmap) bitmap.recycle();
+        return scaled;
+    }
+
+    private static Bitmap render(Drawable drawable, int sizePx) {
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, sizePx, sizePx);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
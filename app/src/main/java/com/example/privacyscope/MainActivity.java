@@ -1,9 +1,8 @@
 package com.example.privacyscope;
 
 import android.content.Intent;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -13,21 +12,42 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.google.android.material.switchmaterial.SwitchMaterial;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final long TREND_RANGE_MS = TimeUnit.DAYS.toMillis(90);
+    private static final int MAX_FEED_ITEMS = 3;
+
     private TextView highRiskCountTextView, mediumRiskCountTextView, lowRiskCountTextView;
+    private TextView recentUsageTextView;
+    private TextView riskTrendTitle;
+    private TrendChartView riskTrendChart;
+    private TextView changeFeedTextView;
     private RecyclerView riskyAppsRecyclerView;
     private MaterialButton scanAppsButton;
+    private MaterialButton riskWeightsButton;
+    private SwitchMaterial deepScanSwitch;
     private BottomNavigationView bottomNavigationView;
     private RiskyAppsAdapter adapter;
 
-    private final List<AppInfo> allApps = new ArrayList<>();
-    private final List<AppInfo> topRiskyApps = new ArrayList<>();
+    private ScanRepository scanRepository;
+    private final ScanRepository.Listener scanListener = new ScanRepository.Listener() {
+        @Override
+        public void onSnapshotChanged(ScanSnapshot snapshot) {
+            updateDashboardUI(snapshot);
+        }
+
+        @Override
+        public void onScanBatch(List<AppSummary> batch) {
+            addPartialResults(batch);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,24 +58,51 @@ public class MainActivity extends AppCompatActivity {
         highRiskCountTextView = findViewById(R.id.highRiskCount);
         mediumRiskCountTextView = findViewById(R.id.mediumRiskCount);
         lowRiskCountTextView = findViewById(R.id.lowRiskCount);
+        recentUsageTextView = findViewById(R.id.recentUsageTextView);
+        riskTrendTitle = findViewById(R.id.riskTrendTitle);
+        riskTrendChart = findViewById(R.id.riskTrendChart);
+        changeFeedTextView = findViewById(R.id.changeFeedTextView);
         riskyAppsRecyclerView = findViewById(R.id.riskyAppsRecyclerView);
         scanAppsButton = findViewById(R.id.scanAppsButton);
+        riskWeightsButton = findViewById(R.id.riskWeightsButton);
+        deepScanSwitch = findViewById(R.id.deepScanSwitch);
         bottomNavigationView = findViewById(R.id.bottom_navigation);
         bottomNavigationView.setSelectedItemId(R.id.nav_dashboard);
 
         // Setup RecyclerView
         riskyAppsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new RiskyAppsAdapter(topRiskyApps, this);
+        adapter = new RiskyAppsAdapter(this);
         riskyAppsRecyclerView.setAdapter(adapter);
+        DetailPrefetcher.attach(riskyAppsRecyclerView, adapter);
 
-        // Load data on start
-        loadAndAnalyzeApps();
+        // Show the shared scan results, scanning only if there are none yet
+        scanRepository = ScanRepository.getInstance(this);
+        scanRepository.addListener(scanListener);
+        scanRepository.ensureFresh();
 
         // Setup Listeners
         scanAppsButton.setOnClickListener(v -> {
             Toast.makeText(MainActivity.this, "Re-scanning apps...", Toast.LENGTH_SHORT).show();
-            loadAndAnalyzeApps();
+            scanRepository.rescan();
         });
+        // Long press re-analyzes every app, e.g. after permissions were changed in Settings
+        scanAppsButton.setOnLongClickListener(v -> {
+            Toast.makeText(MainActivity.this, "Running full re-scan...", Toast.LENGTH_SHORT).show();
+            scanRepository.rescanAll();
+            return true;
+        });
+
+        // Turning deep scan on or off re-analyzes every app in the new mode
+        deepScanSwitch.setChecked(scanRepository.isDeepScan());
+        deepScanSwitch.setOnCheckedChangeListener((button, checked) -> {
+            Toast.makeText(MainActivity.this, checked ? "Deep scan on, re-scanning..." : "Deep scan off, re-scanning...",
+                    Toast.LENGTH_SHORT).show();
+            scanRepository.setDeepScan(checked);
+        });
+
+        // Changing the weights re-scores the current results without scanning again
+        showRiskPreset();
+        riskWeightsButton.setOnClickListener(v -> showRiskWeightsDialog());
 
         bottomNavigationView.setOnItemSelectedListener(item -> {
             int itemId = item.getItemId();
@@ -87,46 +134,140 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void loadAndAnalyzeApps() {
-        new Thread(() -> {
-            PackageManager pm = getPackageManager();
-            List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_PERMISSIONS);
-            allApps.clear();
-
-            for (PackageInfo packageInfo : packages) {
-                // Check if it's a user-installed app
-                if ((packageInfo.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    // This is the corrected way to create the AppInfo object
-                    AppInfo appInfo = new AppInfo(packageInfo, pm);
-                    allApps.add(appInfo);
-                }
-            }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scanRepository.removeListener(scanListener);
+    }
+
+    private void showRiskPreset() {
+        riskWeightsButton.setText("Risk weights: " + scanRepository.getRiskPreset().label);
+    }
+
+    private void showRiskWeightsDialog() {
+        RiskScorer.Preset[] presets = RiskScorer.Preset.values();
+        String[] labels = new String[presets.length];
+        for (int i = 0; i < presets.length; i++) {
+            labels[i] = presets[i].label;
+        }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle("Risk Weights")
+                .setSingleChoiceItems(labels, scanRepository.getRiskPreset().ordinal(), (dialog, which) -> {
+                    dialog.dismiss();
+                    if (presets[which] == scanRepository.getRiskPreset()) return;
+                    Toast.makeText(MainActivity.this, "Re-scoring apps...", Toast.LENGTH_SHORT).show();
+                    scanRepository.setRiskPreset(presets[which]);
+                    showRiskPreset();
+                })
+                .show();
+    }
 
-            // Sort apps by risk score descending
-            Collections.sort(allApps, (a1, a2) -> Integer.compare(a2.getRiskScore(), a1.getRiskScore()));
+    private void updateDashboardUI(ScanSnapshot snapshot) {
+        showRanking();
+        showRecentUsage(snapshot.getAppsByName());
+        showRiskTrend();
+        showChanges();
+    }
 
-            // Update UI on the main thread
-            runOnUiThread(this::updateDashboardUI);
-        }).start();
+    // The full list is in the all-apps report; the dashboard shows the first few
+    private void showChanges() {
+        ScanChanges changes = scanRepository.getLastChanges();
+        if (changes == null) {
+            changeFeedTextView.setVisibility(View.GONE);
+            return;
+        }
+        StringBuilder feed = new StringBuilder();
+        String since = AppDetailActivity.formatTimeAgo(changes.getPreviousScanAtMillis());
+        if (changes.isEmpty()) {
+            feed.append("Nothing changed since the previous scan (").append(since).append(")");
+        } else {
+            feed.append("What changed since the previous scan (").append(since).append(")");
+            List<ScanChanges.AppChange> list = changes.getChanges();
+            for (int i = 0; i < Math.min(list.size(), MAX_FEED_ITEMS); i++) {
+                ScanChanges.AppChange change = list.get(i);
+                feed.append("\n• ").append(change.getAppName()).append(": ").append(change.getDescription());
+            }
+            if (list.size() > MAX_FEED_ITEMS) {
+                feed.append("\n+").append(list.size() - MAX_FEED_ITEMS).append(" more in Reports");
+            }
+        }
+        changeFeedTextView.setText(feed);
+        changeFeedTextView.setVisibility(View.VISIBLE);
     }
 
-    private void updateDashboardUI() {
-        int highRisk = 0, mediumRisk = 0, lowRisk = 0;
-        for (AppInfo app : allApps) {
-            switch (app.getRiskLevel()) {
-                case HIGH: highRisk++; break;
-                case MEDIUM: mediumRisk++; break;
-                case LOW: lowRisk++; break;
+    // The history may still have to be read from disk, so the trend is built on the scan thread,
+    // which also records the history; repeated snapshot changes queue up there in order
+    private void showRiskTrend() {
+        final ScanHistory history = ScanHistory.getInstance(this);
+        scanRepository.runAfterScans(() -> {
+            long now = System.currentTimeMillis();
+            long from = now - TREND_RANGE_MS;
+            ScanHistory.DeviceTrend trend = history.getDeviceTrend(from, now);
+            int n = trend.size();
+            long[] times = new long[n];
+            float[] averages = new float[n];
+            for (int i = 0; i < n; i++) {
+                times[i] = trend.getTime(i);
+                averages[i] = trend.getAverageScore(i);
             }
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                // One scan is not a trend yet
+                int visibility = n < 2 ? View.GONE : View.VISIBLE;
+                riskTrendTitle.setVisibility(visibility);
+                riskTrendChart.setVisibility(visibility);
+                if (n < 2) return;
+                riskTrendTitle.setText(String.format(Locale.getDefault(), "Average risk %.0f → %.0f over the last %d days",
+                        averages[0], averages[n - 1], TimeUnit.MILLISECONDS.toDays(TREND_RANGE_MS)));
+                riskTrendChart.setSeries(times, averages, times[0], now, 100);
+            });
+        });
+    }
+
+    // Read from the device-wide AppOps snapshot taken with the scan, so this costs no IPC. Only the
+    // scanned apps are counted; the snapshot also has system and shared uids. Most installs may
+    // not read other apps' ops; then the last-used times the scan took from the usage index stand
+    // in, counting apps with granted permissions that were opened
+    private void showRecentUsage(List<AppSummary> apps) {
+        AppOpsSnapshot appOps = scanRepository.getAppOps();
+        long since = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        if (!appOps.isEmpty()) {
+            int active = 0;
+            for (AppSummary app : apps) {
+                if (appOps.getLatestAccess(app.getUid()) >= since) active++;
+            }
+            recentUsageTextView.setText(active + (active == 1 ? " app" : " apps") + " used sensitive permissions in the last 24 hours");
+            recentUsageTextView.setVisibility(View.VISIBLE);
+            return;
+        }
+        boolean usageKnown = false;
+        int active = 0;
+        for (AppSummary app : apps) {
+            usageKnown |= app.getLastUsed() > 0;
+            if (app.getGrantedPermissionCount() > 0 && app.getLastUsed() >= since) active++;
+        }
+        if (!usageKnown) {
+            // No usage access either
+            recentUsageTextView.setVisibility(View.GONE);
+            return;
         }
+        recentUsageTextView.setText(active + (active == 1 ? " app" : " apps") + " with sensitive permissions used in the last 24 hours");
+        recentUsageTextView.setVisibility(View.VISIBLE);
+    }
+
+    // The repository has already merged the batch into its ranking
+    private void addPartialResults(List<AppSummary> batch) {
+        showRanking();
+    }
 
-        highRiskCountTextView.setText(String.valueOf(highRisk));
-        mediumRiskCountTextView.setText(String.valueOf(mediumRisk));
-        lowRiskCountTextView.setText(String.valueOf(lowRisk));
+    // Counts and top apps come from the incrementally maintained ranking, so nothing is sorted here
+    private void showRanking() {
+        RiskRanking ranking = scanRepository.getRanking();
+        highRiskCountTextView.setText(String.valueOf(ranking.countOf(AppInfo.RiskLevel.HIGH)));
+        mediumRiskCountTextView.setText(String.valueOf(ranking.countOf(AppInfo.RiskLevel.MEDIUM)));
+        lowRiskCountTextView.setText(String.valueOf(ranking.countOf(AppInfo.RiskLevel.LOW)));
 
-        topRiskyApps.clear();
-        topRiskyApps.addAll(allApps.subList(0, Math.min(allApps.size(), 5)));
-        adapter.notifyDataSetChanged();
+        adapter.submitApps(ranking.top(5));
     }
 }
 
@@ -0,0 +1,123 @@
+package com.example.privacyscope;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.pdf.PdfDocument;
+import android.text.TextPaint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Renders a {@link ReportFile} to a multi-page A4 PDF. The report is read back one report page
+ * at a time and laid out line by line: long lines wrap at the last space that fits, and a new
+ * PDF page starts whenever the next line would cross the bottom margin. Each PDF page is
+ * finished before the next one starts, so only one page canvas is ever open. Meant to run on a
+ * background thread.
+ */
+final class PdfReportRenderer {
+
+    /** Called on the rendering thread after each report page has been laid out. */
+    interface ProgressListener {
+        void onProgress(int pagesDone, int pageCount);
+    }
+
+    // A4 in PostScript points
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+    private static final int MARGIN = 20;
+    private static final float TEXT_SIZE = 10;
+
+    private final PdfDocument document = new PdfDocument();
+    private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final float lineHeight;
+    private final float ascent;
+    private final float textWidth = PAGE_WIDTH - 2 * MARGIN;
+
+    private PdfDocument.Page page;
+    private int pageNumber;
+    // Top of the next line on the current page
+    private float y;
+
+    private PdfReportRenderer() {
+        paint.setTextSize(TEXT_SIZE);
+        lineHeight = paint.getFontSpacing();
+        ascent = -paint.getFontMetrics().ascent;
+    }
+
+    /** Writes {@code report}, which must be complete, to {@code out} as a PDF. */
+    static void render(ReportFile report, File out, ProgressListener listener) throws IOException {
+        PdfReportRenderer renderer = new PdfReportRenderer();
+        try {
+            int pageCount = report.pageCount();
+            for (int i = 0; i < pageCount; i++) {
+                renderer.drawText(report.readPage(i));
+                listener.onProgress(i + 1, pageCount);
+            }
+            renderer.finishPage();
+            if (renderer.pageNumber == 0) {
+                // An empty report still makes a valid, one-page document
+                renderer.startPage();
+                renderer.finishPage();
+            }
+            try (FileOutputStream stream = new FileOutputStream(out)) {
+                renderer.document.writeTo(stream);
+            }
+        } finally {
+            renderer.document.close();
+        }
+    }
+
+    private void drawText(String text) {
+        int lineStart = 0;
+        int length = text.length();
+        while (lineStart < length) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            if (lineStart == lineEnd) {
+                nextLine();
+            }
+            int start = lineStart;
+            while (start < lineEnd) {
+                int end = start + paint.breakText(text, start, lineEnd, true, textWidth, null);
+                if (end == start) {
+                    // Always make progress, even on a character wider than the page
+                    end = start + 1;
+                } else if (end < lineEnd) {
+                    int space = text.lastIndexOf(' ', end - 1);
+                    if (space > start) end = space + 1;
+                }
+                Canvas canvas = nextLine();
+                canvas.drawText(text, start, end, MARGIN, y - lineHeight + ascent, paint);
+                start = end;
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /** Reserves the next line, on a new page if it doesn't fit, and returns the canvas to draw it on. */
+    private Canvas nextLine() {
+        if (page != null && y + lineHeight > PAGE_HEIGHT - MARGIN) {
+            finishPage();
+        }
+        if (page == null) {
+            startPage();
+        }
+        y += lineHeight;
+        return page.getCanvas();
+    }
+
+    private void startPage() {
+        PdfDocument.PageInfo info = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, ++pageNumber).create();
+        page = document.startPage(info);
+        y = MARGIN;
+    }
+
+    private void finishPage() {
+        if (page != null) {
+            document.finishPage(page);
+            page = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.PermissionInfo;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide table of every permission string seen during analysis.
+ * Each permission is looked up in PackageManager once, then kept with a compact int id, its
+ * protection level, group, short display name and the system-provided description. Analysis
+ * and rendering go through here instead of calling getPermissionInfo per app.
+ * Safe to use from any thread.
+ */
+public final class PermissionRegistry {
+
+    /** Protection value for permissions that no installed package defines. */
+    public static final int PROTECTION_UNKNOWN = -1;
+    private static final String FALLBACK_DESCRIPTION = "This permission grants access to sensitive system features.";
+
+    public static final class Entry {
+        private final int id;
+        private final String name;
+        private final String shortName;
+        private final int protection;
+        private final String group;
+        private final PermissionInfo info;
+        private volatile String description;
+        // Resolved by AppOpsReader on first use
+        static final int OP_UNRESOLVED = -2;
+        volatile int appOpCode = OP_UNRESOLVED;
+
+        private Entry(int id, String name, PermissionInfo info) {
+            this.id = id;
+            this.name = name;
+            this.shortName = name.substring(name.lastIndexOf('.') + 1);
+            this.info = info;
+            this.protection = info == null ? PROTECTION_UNKNOWN : protectionOf(info);
+            this.group = info == null ? null : info.group;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getShortName() { return shortName; }
+        public int getProtection() { return protection; }
+        public String getGroup() { return group; }
+        public boolean isDangerous() { return protection == PermissionInfo.PROTECTION_DANGEROUS; }
+    }
+
+    private static PermissionRegistry instance;
+
+    private final PackageManager pm;
+    private final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<>();
+    // Index == id; only appended to, under the registry lock
+    private final List<Entry> byId = new ArrayList<>();
+
+    private PermissionRegistry(Context context) {
+        this.pm = context.getApplicationContext().getPackageManager();
+    }
+
+    public static synchronized PermissionRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new PermissionRegistry(context);
+        }
+        return instance;
+    }
+
+    /** Returns the entry for {@code permission}, resolving it through PackageManager the first time. */
+    public Entry intern(String permission) {
+        Entry entry = byName.get(permission);
+        if (entry != null) return entry;
+
+        // Resolve outside the lock so parallel scan workers don't queue behind each other's IPC
+        PermissionInfo info;
+        try {
+            info = pm.getPermissionInfo(permission, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            info = null;
+        }
+        synchronized (this) {
+            entry = byName.get(permission);
+            if (entry == null) {
+                entry = new Entry(byId.size(), permission, info);
+                byId.add(entry);
+                byName.put(permission, entry);
+            }
+            return entry;
+        }
+    }
+
+    /** Returns the entry for an interned id. */
+    public synchronized Entry get(int id) {
+        return byId.get(id);
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /** The description Android shows for this permission, loaded once and cached. */
+    public String getDescription(Entry entry) {
+        String description = entry.description;
+        if (description == null) {
+            CharSequence loaded = entry.info == null ? null : entry.info.loadDescription(pm);
+            description = loaded == null || loaded.length() == 0 ? FALLBACK_DESCRIPTION : loaded.toString();
+            entry.description = description;
+        }
+        return description;
+    }
+
+    private static int protectionOf(PermissionInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return info.getProtection();
+        }
+        return info.protectionLevel & PermissionInfo.PROTECTION_MASK_BASE;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A text report streamed to a file in app storage, one entry at a time, so writing it takes the
+ * same memory for 50 apps as for 2,000. Every {@link #ENTRIES_PER_PAGE} entries the writer
+ * flushes and records where the page ends; finished pages can be read back with
+ * {@link #readPage} while the rest of the report is still being written. Only the page offsets
+ * are kept in memory.
+ *
+ * <p>Writing happens on a single background thread; page counts and reads are safe from any
+ * thread.
+ */
+final class ReportFile {
+
+    /** Called on the writing thread each time a page is finished. */
+    interface PageListener {
+        void onPageWritten(ReportFile report, int pageCount);
+    }
+
+    static final int ENTRIES_PER_PAGE = 20;
+
+    private static final String DIR_NAME = "reports";
+    // Leftovers from earlier runs; shares are long finished by then
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private final File file;
+    private final PageListener listener;
+
+    // pageEnds[i] is the byte offset where page i ends; page i starts where page i - 1 ends
+    private long[] pageEnds = new long[16];
+    private int pageCount;
+    private boolean complete;
+
+    // Writing thread only
+    private final CountingOutputStream counter;
+    private final Writer out;
+    private int entriesOnPage;
+
+    private ReportFile(File file, PageListener listener) throws IOException {
+        this.file = file;
+        this.listener = listener;
+        this.counter = new CountingOutputStream(new FileOutputStream(file));
+        this.out = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8));
+    }
+
+    /** Creates an empty report named {@code name}.txt in the app's report directory. */
+    static ReportFile create(Context context, String name, PageListener listener) throws IOException {
+        return new ReportFile(new File(directory(context), name + ".txt"), listener);
+    }
+
+    /**
+     * The directory shared reports and exports are written to, shared through the app's
+     * FileProvider. Files older than a day are removed on the way.
+     */
+    static File directory(Context context) throws IOException {
+        File dir = new File(context.getFilesDir(), DIR_NAME);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File[] old = dir.listFiles();
+        if (old != null) {
+            long cutoff = System.currentTimeMillis() - MAX_AGE_MS;
+            for (File f : old) {
+                if (f.lastModified() < cutoff) f.delete();
+            }
+        }
+        return dir;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /** Writes text that is not an entry, such as a title. */
+    void write(CharSequence text) throws IOException {
+        out.append(text);
+    }
+
+    /** Writes one entry; the page ends after every {@link #ENTRIES_PER_PAGE} entries. */
+    void writeEntry(CharSequence text) throws IOException {
+        out.append(text);
+        if (++entriesOnPage == ENTRIES_PER_PAGE) {
+            endPage();
+        }
+    }
+
+    /** Ends the last page and closes the file. */
+    void finish() throws IOException {
+        out.flush();
+        // An empty report still gets one (empty) page so the preview has something to show
+        if (pageCount() == 0 || counter.count > lastPageEnd()) {
+            endPage();
+        }
+        out.close();
+        synchronized (this) {
+            complete = true;
+        }
+    }
+
+    /** Stops writing and deletes the file, e.g. when a newer report replaced this one. */
+    void abandon() {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        delete();
+    }
+
+    void delete() {
+        file.delete();
+    }
+
+    synchronized int pageCount() {
+        return pageCount;
+    }
+
+    synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /** Reads a finished page back from the file. */
+    String readPage(int page) throws IOException {
+        long start;
+        long end;
+        synchronized (this) {
+            if (page < 0 || page >= pageCount) throw new IndexOutOfBoundsException("page " + page);
+            start = page == 0 ? 0 : pageEnds[page - 1];
+            end = pageEnds[page];
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(start);
+            in.readFully(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void endPage() throws IOException {
+        // Pages end on an entry boundary, so no character is split across two pages
+        out.flush();
+        int count;
+        synchronized (this) {
+            if (pageCount == pageEnds.length) {
+                pageEnds = Arrays.copyOf(pageEnds, pageCount * 2);
+            }
+            pageEnds[pageCount++] = counter.count;
+            count = pageCount;
+        }
+        entriesOnPage = 0;
+        listener.onPageWritten(this, count);
+    }
+
+    private synchronized long lastPageEnd() {
+        return pageCount == 0 ? 0 : pageEnds[pageCount - 1];
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.privacyscope;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pages of a {@link ReportFile}, one row per page. Rows are added as the writer finishes pages,
+ * and a page's text is read back from the file when its row is bound, so only the few pages
+ * around the visible ones are ever held in memory.
+ */
+class ReportPreviewAdapter extends RecyclerView.Adapter<ReportPreviewAdapter.ViewHolder> {
+
+    private static final String TAG = "PrivacyScope";
+    private static final int CACHED_PAGES = 8;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService reader = Executors.newSingleThreadExecutor();
+    private final LruCache<Integer, String> pages = new LruCache<>(CACHED_PAGES);
+    private final Set<Integer> loading = new HashSet<>();
+    private ReportFile report;
+    private int pageCount;
+
+    /** Shows {@code report}, or nothing if it is null, starting with the pages written so far. */
+    void setReport(ReportFile report) {
+        this.report = report;
+        pages.evictAll();
+        loading.clear();
+        pageCount = report == null ? 0 : report.pageCount();
+        notifyDataSetChanged();
+    }
+
+    /** Adds the pages {@code report} has finished since the last call. */
+    void onPagesWritten(ReportFile report, int pageCount) {
+        if (report != this.report || pageCount <= this.pageCount) return;
+        int start = this.pageCount;
+        this.pageCount = pageCount;
+        notifyItemRangeInserted(start, pageCount - start);
+    }
+
+    void release() {
+        reader.shutdownNow();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_report_page, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        String text = pages.get(position);
+        holder.text.setText(text != null ? text : "");
+        if (text == null) {
+            load(position);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return pageCount;
+    }
+
+    private void load(int page) {
+        if (!loading.add(page)) return;
+        final ReportFile source = report;
+        reader.execute(() -> {
+            String text;
+            try {
+                text = source.readPage(page);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read report page " + page, e);
+                text = "";
+            }
+            final String loaded = text;
+            mainHandler.post(() -> {
+                if (source != report) return;
+                loading.remove(page);
+                pages.put(page, loaded);
+                notifyItemChanged(page);
+            });
+        });
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.reportPageText);
+        }
+    }
+}
@@ -2,15 +2,11 @@ package com.example.privacyscope;
 
 import android.app.Dialog;
 import android.content.Intent;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.graphics.pdf.PdfDocument;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
-import android.text.Layout;
-import android.text.StaticLayout;
-import android.text.TextPaint;
+import android.util.Log;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
@@ -28,9 +24,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -38,11 +34,17 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 public class ReportsActivity extends AppCompatActivity {
 
+    private static final String TAG = "PrivacyScope";
+
     private TextView reportContentTextView;
-    private Button shareTextButton, sharePdfButton;
+    private RecyclerView reportPreviewRecyclerView;
+    private ReportPreviewAdapter previewAdapter;
+    private Button shareTextButton, sharePdfButton, exportDataButton;
     private ChipGroup reportTypeChipGroup;
     private MaterialCardView selectAppCard;
     private ImageView selectedAppIcon;
@@ -50,9 +52,16 @@ public class ReportsActivity extends AppCompatActivity {
     private ProgressBar loadingIndicator;
 
 
-    private String reportContent;
-    private final List<AppInfo> allApps = new ArrayList<>();
-    private AppInfo selectedAppInfo;
+    // The report being previewed and shared; null while a message is shown instead
+    private ReportFile currentReport;
+    // Bumped whenever the shown report is replaced; writers for older generations stop early
+    private volatile int reportGeneration;
+    // The snapshot's immutable list, so open dialogs never see it change under them
+    private List<AppSummary> allApps = Collections.emptyList();
+    private List<AppSummary> appsByRisk = new ArrayList<>();
+    private AppSummary selectedApp;
+    private ScanRepository scanRepository;
+    private final ScanRepository.Listener scanListener = this::onAppsLoaded;
 
 
     @Override
@@ -69,10 +78,24 @@ public class ReportsActivity extends AppCompatActivity {
         loadAllApps();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scanRepository.removeListener(scanListener);
+        // The current file is kept for a share that may still be reading it
+        reportGeneration++;
+        previewAdapter.release();
+    }
+
     private void initializeViews() {
         reportContentTextView = findViewById(R.id.reportContentTextView);
+        reportPreviewRecyclerView = findViewById(R.id.reportPreviewRecyclerView);
+        reportPreviewRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        previewAdapter = new ReportPreviewAdapter();
+        reportPreviewRecyclerView.setAdapter(previewAdapter);
         shareTextButton = findViewById(R.id.shareTextButton);
         sharePdfButton = findViewById(R.id.sharePdfButton);
+        exportDataButton = findViewById(R.id.exportDataButton);
         reportTypeChipGroup = findViewById(R.id.reportTypeChipGroup);
         selectAppCard = findViewById(R.id.selectAppCard);
         selectedAppIcon = findViewById(R.id.selectedAppIcon);
@@ -88,11 +111,10 @@ public class ReportsActivity extends AppCompatActivity {
                 generateAllAppsReport();
             } else if (checkedIds.contains(R.id.chipSingleApp)) {
                 selectAppCard.setVisibility(View.VISIBLE);
-                if (selectedAppInfo != null) {
-                    generateSingleAppReport(selectedAppInfo);
+                if (selectedApp != null) {
+                    loadSingleAppReport(selectedApp);
                 } else {
-                    reportContentTextView.setText("Please select an app to generate a detailed report.");
-                    reportContent = "";
+                    resetReport("Please select an app to generate a detailed report.");
                 }
             }
         });
@@ -100,65 +122,136 @@ public class ReportsActivity extends AppCompatActivity {
         selectAppCard.setOnClickListener(v -> showAppSelectionDialog());
         shareTextButton.setOnClickListener(v -> shareReportAsText());
         sharePdfButton.setOnClickListener(v -> shareReportAsPdf());
+        exportDataButton.setOnClickListener(v -> showExportDialog());
     }
 
     private void loadAllApps() {
         selectAppCard.setEnabled(false);
         loadingIndicator.setVisibility(View.VISIBLE);
 
-        new Thread(() -> {
-            PackageManager pm = getPackageManager();
-            List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_PERMISSIONS | PackageManager.GET_RECEIVERS);
-            allApps.clear();
-            for (PackageInfo packageInfo : packages) {
-                if ((packageInfo.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    allApps.add(new AppInfo(packageInfo, pm));
-                }
-            }
-            Collections.sort(allApps, (a1, a2) -> a1.getAppName().compareToIgnoreCase(a2.getAppName()));
+        scanRepository = ScanRepository.getInstance(this);
+        scanRepository.addListener(scanListener);
+        scanRepository.ensureFresh();
+    }
 
-            // --- THIS IS THE FIX ---
-            // Now that apps are loaded, generate the initial report and enable UI.
-            runOnUiThread(() -> {
-                loadingIndicator.setVisibility(View.GONE);
-                selectAppCard.setEnabled(true);
-                generateAllAppsReport(); // Generate the report *after* loading is complete.
-            });
-            // --- END OF FIX ---
-        }).start();
+    private void onAppsLoaded(ScanSnapshot snapshot) {
+        allApps = snapshot.getAppsByName();
+        // Walks the repository's ranking in order, so the report needs no copy-and-sort of its own
+        appsByRisk = scanRepository.getRanking().top(snapshot.size());
+
+        // Now that apps are loaded, generate the initial report and enable UI.
+        loadingIndicator.setVisibility(View.GONE);
+        selectAppCard.setEnabled(true);
+        if (reportTypeChipGroup.getCheckedChipId() == R.id.chipAllApps) {
+            generateAllAppsReport();
+        }
     }
 
 
+    /**
+     * Streams the summary report to a file, one app entry at a time, and previews it page by
+     * page; the first page shows while the rest is still being written.
+     */
     private void generateAllAppsReport() {
-        reportContentTextView.setText("Generating summary report...");
+        final int generation = resetReport("Generating summary report...");
+        // Check if the shared scan is still being loaded
+        if (scanRepository.getSnapshot() == null) {
+            reportContentTextView.setText("Loading app data, please wait...");
+            return;
+        }
+        // Taken from the ranking when the snapshot arrived; the thread only reads it
+        final List<AppSummary> sortedApps = appsByRisk;
+        final AppOpsSnapshot appOps = scanRepository.getAppOps();
+        final ScanChanges changes = scanRepository.getLastChanges();
+        final UsageIndex usageIndex = UsageIndex.getInstance(this);
         new Thread(() -> {
-            // Check if allApps is still being loaded
-            if (allApps.isEmpty() && loadingIndicator.getVisibility() == View.VISIBLE) {
-                runOnUiThread(() -> reportContentTextView.setText("Loading app data, please wait..."));
-                return;
-            }
+            ReportFile report = null;
+            try {
+                report = createReport("PrivacyScope_Report_", generation);
+                UsageIndex.Table usage = usageIndex.get();
+                // Reused for every entry, so the writer holds one entry at a time
+                StringBuilder sb = new StringBuilder();
+                sb.append("PrivacyScope - All Apps Summary Report\n");
+                sb.append("Generated on: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date())).append("\n");
+                sb.append("====================================\n\n");
+                report.write(sb);
+                if (changes != null) {
+                    writeChanges(report, changes);
+                }
 
-            List<AppInfo> sortedApps = new ArrayList<>(allApps);
-            Collections.sort(sortedApps, (a1, a2) -> Integer.compare(a2.getRiskScore(), a1.getRiskScore()));
+                for (AppSummary app : sortedApps) {
+                    if (generation != reportGeneration) {
+                        report.abandon();
+                        return;
+                    }
+                    sb.setLength(0);
+                    sb.append("App: ").append(app.getAppName()).append("\n");
+                    sb.append("  - Risk Score: ").append(app.getRiskScore()).append(" (").append(app.getRiskLevel()).append(")\n");
+                    sb.append("  - Permissions: ").append(app.getDangerousPermissionCount()).append("\n");
+                    sb.append("  - Trackers: ").append(app.getTrackerCount()).append("\n");
+                    if (usage != null) {
+                        long lastUsed = usage.getLastUsed(app.getPackageName());
+                        sb.append("  - Last used: ").append(lastUsed > 0 ? AppDetailActivity.formatTimeAgo(lastUsed) : "Not in 30 days")
+                                .append(" (").append(TimeUnit.MILLISECONDS.toMinutes(usage.getForegroundTime(app.getPackageName())))
+                                .append(" min in foreground)\n");
+                    }
+                    if (!appOps.isEmpty()) {
+                        long lastAccess = appOps.getLatestAccess(app.getUid());
+                        sb.append("  - Last sensitive access: ")
+                                .append(lastAccess > 0 ? AppDetailActivity.formatTimeAgo(lastAccess) : "Never").append("\n");
+                    }
+                    sb.append("\n");
+                    report.writeEntry(sb);
+                }
+                report.finish();
+            } catch (IOException e) {
+                onReportFailed(generation, report, e);
+            }
+        }).start();
+    }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append("PrivacyScope - All Apps Summary Report\n");
-            sb.append("Generated on: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date())).append("\n");
-            sb.append("====================================\n\n");
+    // Each change is an entry, so a long feed is paged like the apps that follow it
+    private void writeChanges(ReportFile report, ScanChanges changes) throws IOException {
+        String previousScan = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault())
+                .format(new Date(changes.getPreviousScanAtMillis()));
+        report.write("--- What Changed Since " + previousScan + " (" + changes.getChanges().size() + ") ---\n");
+        if (changes.isEmpty()) {
+            report.write("No changes\n");
+        }
+        for (ScanChanges.AppChange change : changes.getChanges()) {
+            report.writeEntry("- " + change.getAppName() + ": " + change.getDescription() + "\n");
+        }
+        report.write("\n====================================\n\n");
+    }
 
-            for (AppInfo app : sortedApps) {
-                sb.append("App: ").append(app.getAppName()).append("\n");
-                sb.append("  - Risk Score: ").append(app.getRiskScore()).append(" (").append(app.getRiskLevel()).append(")\n");
-                sb.append("  - Permissions: ").append(app.getDangerousPermissions().size()).append("\n");
-                sb.append("  - Trackers: ").append(app.getDetectedTrackers().size()).append("\n\n");
+    // The detailed report needs the full permission and tracker lists, which the scan doesn't keep
+    private void loadSingleAppReport(AppSummary app) {
+        final int generation = resetReport("Generating detailed report...");
+        final String packageName = app.getPackageName();
+        new Thread(() -> {
+            ReportFile report = null;
+            try {
+                AppInfo details = scanRepository.loadDetails(packageName);
+                // Ignore the result if the user picked another app or report type meanwhile
+                if (generation != reportGeneration) return;
+                report = createReport("PrivacyScope_" + packageName + "_", generation);
+                writeSingleAppReport(report, details);
+                report.finish();
+            } catch (PackageManager.NameNotFoundException e) {
+                runOnUiThread(() -> {
+                    if (generation == reportGeneration) {
+                        reportContentTextView.setText("This app is no longer installed.");
+                    }
+                });
+            } catch (CancellationException e) {
+                // Interrupted before anything was written; the next request resets the view
+            } catch (IOException e) {
+                onReportFailed(generation, report, e);
             }
-
-            reportContent = sb.toString();
-            runOnUiThread(() -> reportContentTextView.setText(reportContent));
         }).start();
     }
 
-    private void generateSingleAppReport(AppInfo app) {
+    private void writeSingleAppReport(ReportFile report, AppInfo app) throws IOException {
         StringBuilder sb = new StringBuilder();
         sb.append("PrivacyScope - Single App Detailed Report\n");
         sb.append("====================================\n\n");
@@ -171,8 +264,7 @@ public class ReportsActivity extends AppCompatActivity {
             sb.append("None\n");
         } else {
             for (AppInfo.PermissionDetail permDetail : app.getDangerousPermissions()) {
-                String permName = permDetail.name; // Get the permission name string
-                sb.append("  - ").append(permName.substring(permName.lastIndexOf('.') + 1)).append("\n");
+                sb.append("  - ").append(permDetail.permission.getShortName()).append("\n");
             }
         }
         sb.append("\n");
@@ -187,8 +279,56 @@ public class ReportsActivity extends AppCompatActivity {
         }
         sb.append("\n");
 
-        reportContent = sb.toString();
-        reportContentTextView.setText(reportContent);
+        report.write(sb);
+    }
+
+    /** Creates the report file; its pages are shown as they are written, as long as it is still current. */
+    private ReportFile createReport(String prefix, int generation) throws IOException {
+        String name = prefix + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + "_" + generation;
+        return ReportFile.create(this, name, (report, pageCount) -> runOnUiThread(() -> {
+            if (generation != reportGeneration || isDestroyed()) {
+                if (report != currentReport) {
+                    // Replaced before it was ever shown; its writer stops at the next entry
+                    report.delete();
+                }
+                return;
+            }
+            if (report != currentReport) {
+                currentReport = report;
+                previewAdapter.setReport(report);
+                reportContentTextView.setVisibility(View.GONE);
+                reportPreviewRecyclerView.setVisibility(View.VISIBLE);
+            } else {
+                previewAdapter.onPagesWritten(report, pageCount);
+            }
+        }));
+    }
+
+    // Called on the writer thread
+    private void onReportFailed(int generation, ReportFile report, IOException e) {
+        Log.w(TAG, "Failed to write report", e);
+        if (report != null) {
+            report.abandon();
+        }
+        runOnUiThread(() -> {
+            if (generation == reportGeneration) {
+                resetReport("Could not write the report: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Drops the shown report in favour of {@code message} and returns the new report generation. */
+    private int resetReport(String message) {
+        if (currentReport != null) {
+            // Still being written if it is the all-apps report; its writer stops at the next entry
+            currentReport.delete();
+            currentReport = null;
+        }
+        previewAdapter.setReport(null);
+        reportPreviewRecyclerView.setVisibility(View.GONE);
+        reportContentTextView.setVisibility(View.VISIBLE);
+        reportContentTextView.setText(message);
+        return ++reportGeneration;
     }
 
     private void showAppSelectionDialog() {
@@ -202,79 +342,146 @@ public class ReportsActivity extends AppCompatActivity {
 
         RecyclerView recyclerView = dialog.findViewById(R.id.dialogRecyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        AppDialogAdapter dialogAdapter = new AppDialogAdapter(allApps, app -> {
-            selectedAppInfo = app;
+        AppDialogAdapter dialogAdapter = new AppDialogAdapter(app -> {
+            selectedApp = app;
             selectedAppName.setText(app.getAppName());
-            selectedAppIcon.setImageDrawable(app.getIcon());
+            IconLoader.getInstance(this).load(selectedAppIcon, app.getPackageName());
             selectedAppIcon.setImageTintList(null);
-            generateSingleAppReport(app);
+            loadSingleAppReport(app);
             dialog.dismiss();
         });
+        dialogAdapter.submitApps(allApps);
         recyclerView.setAdapter(dialogAdapter);
         dialog.show();
     }
 
 
     private void shareReportAsText() {
-        if (reportContent == null || reportContent.isEmpty() || reportContent.startsWith("Please select")) {
-            Toast.makeText(this, "Please generate a report first.", Toast.LENGTH_SHORT).show();
-            return;
-        }
+        if (!checkReportReady()) return;
+        Uri reportUri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".provider", currentReport.getFile());
         Intent shareIntent = new Intent(Intent.ACTION_SEND);
-        shareIntent.putExtra(Intent.EXTRA_TEXT, reportContent);
+        shareIntent.putExtra(Intent.EXTRA_STREAM, reportUri);
         shareIntent.setType("text/plain");
+        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
         startActivity(Intent.createChooser(shareIntent, "Share Report Via"));
     }
 
+    /** Renders the report to a PDF on a background thread, showing progress on the button. */
     private void shareReportAsPdf() {
-        if (reportContent == null || reportContent.isEmpty() || reportContent.startsWith("Please select")) {
-            Toast.makeText(this, "Please generate a report first.", Toast.LENGTH_SHORT).show();
+        if (!checkReportReady()) return;
+        final ReportFile report = currentReport;
+        File pdfPath = getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        String fileName = "PrivacyScope_Report_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".pdf";
+        final File file = new File(pdfPath, fileName);
+
+        sharePdfButton.setEnabled(false);
+        sharePdfButton.setText("Rendering PDF...");
+        new Thread(() -> {
+            try {
+                PdfReportRenderer.render(report, file, (pagesDone, pageCount) -> runOnUiThread(() ->
+                        sharePdfButton.setText("Rendering PDF " + (pagesDone * 100 / pageCount) + "%")));
+                runOnUiThread(() -> {
+                    resetPdfButton();
+                    if (isDestroyed()) return;
+                    Toast.makeText(this, "PDF saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+                    Uri pdfUri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".provider", file);
+                    Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                    shareIntent.setType("application/pdf");
+                    shareIntent.putExtra(Intent.EXTRA_STREAM, pdfUri);
+                    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    startActivity(Intent.createChooser(shareIntent, "Share PDF Report Via"));
+                });
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to create PDF", e);
+                file.delete();
+                runOnUiThread(() -> {
+                    resetPdfButton();
+                    Toast.makeText(this, "Error creating PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+            }
+        }).start();
+    }
+
+    private void resetPdfButton() {
+        sharePdfButton.setEnabled(true);
+        sharePdfButton.setText("Share as PDF");
+    }
+
+    // Labels and options line up by index
+    private static final String[] EXPORT_LABELS = {
+            "JSON Lines", "JSON Lines (gzip)", "JSON Lines (zip)", "CSV", "CSV (gzip)", "CSV (zip)"
+    };
+    private static final ScanExporter.Format[] EXPORT_FORMATS = {
+            ScanExporter.Format.JSON_LINES, ScanExporter.Format.JSON_LINES, ScanExporter.Format.JSON_LINES,
+            ScanExporter.Format.CSV, ScanExporter.Format.CSV, ScanExporter.Format.CSV
+    };
+    private static final ScanExporter.Compression[] EXPORT_COMPRESSION = {
+            ScanExporter.Compression.NONE, ScanExporter.Compression.GZIP, ScanExporter.Compression.ZIP,
+            ScanExporter.Compression.NONE, ScanExporter.Compression.GZIP, ScanExporter.Compression.ZIP
+    };
+
+    private void showExportDialog() {
+        if (scanRepository.getSnapshot() == null) {
+            Toast.makeText(this, "App data is still loading.", Toast.LENGTH_SHORT).show();
             return;
         }
-        File pdfFile = createPdfFromString(reportContent);
-        if (pdfFile != null) {
-            Uri pdfUri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".provider", pdfFile);
-            Intent shareIntent = new Intent(Intent.ACTION_SEND);
-            shareIntent.setType("application/pdf");
-            shareIntent.putExtra(Intent.EXTRA_STREAM, pdfUri);
-            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            startActivity(Intent.createChooser(shareIntent, "Share PDF Report Via"));
-        }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle("Export Scan Data")
+                .setItems(EXPORT_LABELS, (dialog, which) -> exportScanData(EXPORT_FORMATS[which], EXPORT_COMPRESSION[which]))
+                .show();
     }
 
-    private File createPdfFromString(String text) {
-        File pdfPath = getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
-        String fileName = "PrivacyScope_Report_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".pdf";
-        File file = new File(pdfPath, fileName);
-
-        try {
-            PdfDocument document = new PdfDocument();
-            PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, 1).create(); // A4 page size
-            PdfDocument.Page page = document.startPage(pageInfo);
-
-            TextPaint textPaint = new TextPaint();
-            textPaint.setTextSize(10);
-            StaticLayout staticLayout = StaticLayout.Builder.obtain(text, 0, text.length(), textPaint, page.getCanvas().getWidth() - 40)
-                    .setAlignment(Layout.Alignment.ALIGN_NORMAL)
-                    .build();
-
-            page.getCanvas().save();
-            page.getCanvas().translate(20, 20); // Margins
-            staticLayout.draw(page.getCanvas());
-            page.getCanvas().restore();
-
-            document.finishPage(page);
-            document.writeTo(new FileOutputStream(file));
-            document.close();
-            Toast.makeText(this, "PDF saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-            return file;
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Error creating PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            return null;
-        }
+    /** Streams every scanned app to a JSON Lines or CSV file on a background thread, then shares it. */
+    private void exportScanData(ScanExporter.Format format, ScanExporter.Compression compression) {
+        // The snapshot's list is immutable, so the thread can walk it while new scans arrive
+        final List<AppSummary> apps = allApps;
+        exportDataButton.setEnabled(false);
+        exportDataButton.setText("Exporting...");
+        new Thread(() -> {
+            try {
+                File file = ScanExporter.export(this, apps, format, compression, (appsDone, appCount) -> {
+                    // Every 1% is plenty for the button and keeps the main thread quiet
+                    if (appsDone == appCount || appsDone % Math.max(1, appCount / 100) == 0) {
+                        runOnUiThread(() -> exportDataButton.setText("Exporting " + (appsDone * 100 / appCount) + "%"));
+                    }
+                });
+                runOnUiThread(() -> {
+                    resetExportButton();
+                    if (isDestroyed()) return;
+                    Uri uri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".provider", file);
+                    Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                    shareIntent.setType(ScanExporter.mimeTypeOf(format, compression));
+                    shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
+                    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    startActivity(Intent.createChooser(shareIntent, "Share Export Via"));
+                });
+            } catch (IOException | RuntimeException e) {
+                // Anything escaping the thread would crash the app and leave the button disabled
+                Log.w(TAG, "Failed to export scan data", e);
+                runOnUiThread(() -> {
+                    resetExportButton();
+                    Toast.makeText(this, "Error exporting data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+            }
+        }).start();
     }
 
+    private void resetExportButton() {
+        exportDataButton.setEnabled(true);
+        exportDataButton.setText("Export");
+    }
+
+    private boolean checkReportReady() {
+        if (currentReport == null) {
+            Toast.makeText(this, "Please generate a report first.", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        if (!currentReport.isComplete()) {
+            Toast.makeText(this, "The report is still being written.", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        return true;
+    }
 
     private void setupBottomNavigation() {
         BottomNavigationView bottomNavigationView = findViewById(R.id.bottom_navigation);
@@ -0,0 +1,144 @@
+package com.example.privacyscope;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Apps ordered by risk, kept up to date as apps are added, removed or re-scored instead of
+ * being re-sorted for every screen. Scores are bounded (0-100), so apps sit in one name-ordered
+ * bucket per score and a Fenwick tree over the buckets answers level counts and ranks.
+ * Updating one app costs O(log n); top-k costs O(k) plus one step per score.
+ * {@link ScanRepository} owns the instance and applies each snapshot's delta to it;
+ * like the repository it is confined to the main thread.
+ */
+public final class RiskRanking {
+
+    private static final int MAX_SCORE = 100;
+    // Same order as ScanSnapshot.BY_RISK within one score; the package name breaks label ties
+    private static final Comparator<AppSummary> WITHIN_SCORE = (a1, a2) -> {
+        int byName = ScanSnapshot.BY_NAME.compare(a1, a2);
+        return byName != 0 ? byName : a1.getPackageName().compareTo(a2.getPackageName());
+    };
+
+    private final Map<String, AppSummary> byPackage = new HashMap<>();
+    private final List<TreeSet<AppSummary>> buckets = new ArrayList<>(MAX_SCORE + 1);
+    // Fenwick tree over scores in descending order: slot i + 1 counts the apps scoring MAX_SCORE - i
+    private final int[] tree = new int[MAX_SCORE + 2];
+    // Version of the last snapshot applied, or -1 if the contents don't match any snapshot
+    private long version = -1;
+
+    RiskRanking() {
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            buckets.add(new TreeSet<>(WITHIN_SCORE));
+        }
+    }
+
+    public int size() {
+        return byPackage.size();
+    }
+
+    /** Number of apps scoring {@code score} or more. */
+    public int countAtLeast(int score) {
+        if (score > MAX_SCORE) return 0;
+        int count = 0;
+        for (int i = slotOf(score) + 1; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    public int countOf(AppInfo.RiskLevel level) {
+        switch (level) {
+            case HIGH: return countAtLeast(RiskScorer.HIGH_THRESHOLD);
+            case MEDIUM: return countAtLeast(RiskScorer.MEDIUM_THRESHOLD) - countAtLeast(RiskScorer.HIGH_THRESHOLD);
+            default: return size() - countAtLeast(RiskScorer.MEDIUM_THRESHOLD);
+        }
+    }
+
+    /** 1-based rank of the app by score, or 0 if it isn't ranked. Apps with equal scores share a rank. */
+    public int rankOf(String packageName) {
+        AppSummary app = byPackage.get(packageName);
+        return app == null ? 0 : countAtLeast(clamp(app.getRiskScore()) + 1) + 1;
+    }
+
+    /** The {@code k} riskiest apps, highest score first and by name within a score. */
+    public List<AppSummary> top(int k) {
+        List<AppSummary> result = new ArrayList<>(Math.min(k, size()));
+        for (int score = MAX_SCORE; score >= 0 && result.size() < k; score--) {
+            for (AppSummary app : buckets.get(score)) {
+                if (result.size() == k) break;
+                result.add(app);
+            }
+        }
+        return result;
+    }
+
+    // --- Updates, called by ScanRepository ---
+
+    /** Brings the ranking to {@code snapshot}, applying only its delta when possible. */
+    void apply(ScanSnapshot snapshot) {
+        if (snapshot.canApplyDeltaTo(version)) {
+            for (String packageName : snapshot.getRemovedPackages()) {
+                remove(packageName);
+            }
+            for (String packageName : snapshot.getChangedPackages()) {
+                AppSummary app = snapshot.findApp(packageName);
+                if (app != null) put(app);
+            }
+        } else {
+            clear();
+            for (AppSummary app : snapshot.getAppsByName()) {
+                put(app);
+            }
+        }
+        version = snapshot.getVersion();
+    }
+
+    /** Adds or replaces one app, e.g. a partial result streamed before the first snapshot. */
+    void put(AppSummary app) {
+        remove(app.getPackageName());
+        byPackage.put(app.getPackageName(), app);
+        int score = clamp(app.getRiskScore());
+        buckets.get(score).add(app);
+        update(score, 1);
+        version = -1;
+    }
+
+    void remove(String packageName) {
+        AppSummary old = byPackage.remove(packageName);
+        if (old == null) return;
+        int score = clamp(old.getRiskScore());
+        buckets.get(score).remove(old);
+        update(score, -1);
+        version = -1;
+    }
+
+    void clear() {
+        byPackage.clear();
+        for (TreeSet<AppSummary> bucket : buckets) {
+            bucket.clear();
+        }
+        for (int i = 0; i < tree.length; i++) {
+            tree[i] = 0;
+        }
+        version = -1;
+    }
+
+    private void update(int score, int delta) {
+        for (int i = slotOf(score) + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static int slotOf(int score) {
+        return MAX_SCORE - Math.max(score, 0);
+    }
+
+    private static int clamp(int score) {
+        return Math.max(0, Math.min(score, MAX_SCORE));
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.privacyscope;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns an app's permission and tracker bitsets into a 0-100 risk score using configurable
+ * {@link Weights}, chosen from the built-in {@link Preset}s in the dashboard settings. Weights
+ * are compiled into arrays indexed by {@link PermissionRegistry} and {@link TrackerDatabase}
+ * ids, so scoring walks the set bits with one array lookup per bit.
+ * {@link #scoreAll} scores a whole snapshot in one pass; changing weights only needs that pass,
+ * not a new PackageManager scan. Safe to use from any thread.
+ */
+public final class RiskScorer {
+
+    private static final String TAG = "PrivacyScope";
+    /** Lowest scores of the HIGH and MEDIUM levels. */
+    public static final int HIGH_THRESHOLD = 60;
+    public static final int MEDIUM_THRESHOLD = 30;
+
+    /**
+     * Scoring configuration. A permission contributes its weight (or the default) times the
+     * grant factor for its state; each tracker contributes its own weight if it has one, else its
+     * category's; the sum is multiplied by a recency factor when the app was in the foreground
+     * lately, per the {@link UsageIndex}.
+     */
+    public static final class Weights {
+        final Map<String, Float> permissionWeights = new HashMap<>();
+        final Map<String, Float> trackerWeights = new HashMap<>();
+        final Map<String, Float> trackerCategoryWeights = new HashMap<>();
+        float defaultPermissionWeight = 8f;
+        float grantedFactor = 1f;
+        float deniedFactor = 0.35f;
+        float defaultTrackerWeight = 3f;
+        float usedLastDayFactor = 1.15f;
+        float usedLastWeekFactor = 1.05f;
+
+        /** The built-in weights: data that identifies or follows the user weighs most. */
+        public static Weights defaults() {
+            Weights weights = new Weights();
+            weights.setPermissionWeight("android.permission.READ_SMS", 20f);
+            weights.setPermissionWeight("android.permission.RECEIVE_SMS", 16f);
+            weights.setPermissionWeight("android.permission.SEND_SMS", 18f);
+            weights.setPermissionWeight("android.permission.RECEIVE_MMS", 12f);
+            weights.setPermissionWeight("android.permission.READ_CALL_LOG", 18f);
+            weights.setPermissionWeight("android.permission.WRITE_CALL_LOG", 14f);
+            weights.setPermissionWeight("android.permission.PROCESS_OUTGOING_CALLS", 14f);
+            weights.setPermissionWeight("android.permission.ACCESS_FINE_LOCATION", 18f);
+            weights.setPermissionWeight("android.permission.ACCESS_BACKGROUND_LOCATION", 22f);
+            weights.setPermissionWeight("android.permission.ACCESS_COARSE_LOCATION", 10f);
+            weights.setPermissionWeight("android.permission.RECORD_AUDIO", 18f);
+            weights.setPermissionWeight("android.permission.CAMERA", 15f);
+            weights.setPermissionWeight("android.permission.READ_CONTACTS", 14f);
+            weights.setPermissionWeight("android.permission.GET_ACCOUNTS", 8f);
+            weights.setPermissionWeight("android.permission.BODY_SENSORS", 12f);
+            weights.setPermissionWeight("android.permission.READ_PHONE_NUMBERS", 10f);
+            weights.setPermissionWeight("android.permission.READ_PHONE_STATE", 8f);
+            weights.setPermissionWeight("android.permission.READ_CALENDAR", 10f);
+            weights.setPermissionWeight("android.permission.READ_MEDIA_IMAGES", 8f);
+            weights.setPermissionWeight("android.permission.READ_EXTERNAL_STORAGE", 6f);
+            weights.setPermissionWeight("android.permission.WRITE_EXTERNAL_STORAGE", 6f);
+            weights.setPermissionWeight("android.permission.ACTIVITY_RECOGNITION", 5f);
+            weights.setPermissionWeight("android.permission.POST_NOTIFICATIONS", 2f);
+            weights.setTrackerCategoryWeight("Location", 8f);
+            weights.setTrackerCategoryWeight(TrackerDatabase.CATEGORY_ADVERTISEMENT, 6f);
+            weights.setTrackerCategoryWeight("Profiling", 5f);
+            weights.setTrackerCategoryWeight("Identification", 5f);
+            weights.setTrackerCategoryWeight("Analytics", 3f);
+            weights.setTrackerCategoryWeight("Crash reporting", 1f);
+            // SDKs that collect less than their category suggests
+            weights.setTrackerWeight("Facebook Flipper", 1f);
+            weights.setTrackerWeight("Google Play Install Referrer", 2f);
+            return weights;
+        }
+
+        public Weights setPermissionWeight(String permission, float weight) {
+            permissionWeights.put(permission, weight);
+            return this;
+        }
+
+        /** Overrides the category weight for one tracker, by its name in {@link TrackerDatabase}. */
+        public Weights setTrackerWeight(String tracker, float weight) {
+            trackerWeights.put(tracker, weight);
+            return this;
+        }
+
+        public Weights setTrackerCategoryWeight(String category, float weight) {
+            trackerCategoryWeights.put(category, weight);
+            return this;
+        }
+
+        public Weights setDefaultPermissionWeight(float weight) {
+            defaultPermissionWeight = weight;
+            return this;
+        }
+
+        /** Multipliers for granted permissions and for requested but denied ones. */
+        public Weights setGrantFactors(float granted, float denied) {
+            grantedFactor = granted;
+            deniedFactor = denied;
+            return this;
+        }
+
+        public Weights setDefaultTrackerWeight(float weight) {
+            defaultTrackerWeight = weight;
+            return this;
+        }
+
+        /** Multipliers for apps used in the last day or week. */
+        public Weights setRecencyFactors(float lastDay, float lastWeek) {
+            usedLastDayFactor = lastDay;
+            usedLastWeekFactor = lastWeek;
+            return this;
+        }
+    }
+
+    /** The weight sets users can pick from. */
+    public enum Preset {
+        BALANCED("Balanced"),
+        // Denied permissions and recent use count more
+        STRICT("Strict"),
+        IGNORE_USAGE("Ignore recent use");
+
+        public final String label;
+
+        Preset(String label) {
+            this.label = label;
+        }
+
+        public Weights weights() {
+            switch (this) {
+                case STRICT: return Weights.defaults().setGrantFactors(1f, 0.7f).setRecencyFactors(1.3f, 1.1f);
+                case IGNORE_USAGE: return Weights.defaults().setRecencyFactors(1f, 1f);
+                default: return Weights.defaults();
+            }
+        }
+    }
+
+    // Weights resolved against the registries. Permissions interned later are resolved by
+    // extend(), which may fill the spare capacity of the same arrays: an instance only reads
+    // below its own permissionCount, so instances already handed out are unaffected
+    private static final class Compiled {
+        final Weights weights;
+        final float[] grantedWeight;
+        final float[] deniedWeight;
+        final int permissionCount;
+        final float[] trackerWeight;
+
+        private Compiled(Weights weights, float[] grantedWeight, float[] deniedWeight, int permissionCount,
+                         float[] trackerWeight) {
+            this.weights = weights;
+            this.grantedWeight = grantedWeight;
+            this.deniedWeight = deniedWeight;
+            this.permissionCount = permissionCount;
+            this.trackerWeight = trackerWeight;
+        }
+
+        static Compiled of(Weights weights, PermissionRegistry permissions, TrackerDatabase trackers) {
+            float[] trackerWeight = new float[trackers.size()];
+            for (int id = 0; id < trackerWeight.length; id++) {
+                Float weight = weights.trackerWeights.get(trackers.getName(id));
+                if (weight == null) weight = weights.trackerCategoryWeights.get(trackers.getCategory(id));
+                trackerWeight[id] = weight == null ? weights.defaultTrackerWeight : weight;
+            }
+            return new Compiled(weights, new float[0], new float[0], 0, trackerWeight).extend(permissions);
+        }
+
+        // Resolves only the ids interned since this was built; the arrays grow by doubling, so a
+        // scan interning permissions app by app doesn't redo the ones already resolved
+        Compiled extend(PermissionRegistry permissions) {
+            int count = permissions.size();
+            float[] granted = grantedWeight;
+            float[] denied = deniedWeight;
+            if (count > granted.length) {
+                int capacity = Math.max(count, granted.length * 2);
+                granted = Arrays.copyOf(granted, capacity);
+                denied = Arrays.copyOf(denied, capacity);
+            }
+            for (int id = permissionCount; id < count; id++) {
+                Float weight = weights.permissionWeights.get(permissions.get(id).getName());
+                float base = weight == null ? weights.defaultPermissionWeight : weight;
+                granted[id] = base * weights.grantedFactor;
+                denied[id] = base * weights.deniedFactor;
+            }
+            return new Compiled(weights, granted, denied, count, trackerWeight);
+        }
+    }
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK_MS = TimeUnit.DAYS.toMillis(7);
+
+    private final PermissionRegistry permissions;
+    private final TrackerDatabase trackers;
+    private volatile Compiled compiled;
+
+    RiskScorer(PermissionRegistry permissions, TrackerDatabase trackers) {
+        this.permissions = permissions;
+        this.trackers = trackers;
+        this.compiled = Compiled.of(Weights.defaults(), permissions, trackers);
+    }
+
+    public synchronized void setWeights(Weights weights) {
+        compiled = Compiled.of(weights, permissions, trackers);
+    }
+
+    /**
+     * Scores one app. {@code lastUsed} is when the app was last in the foreground, or 0 if
+     * unknown.
+     */
+    public int score(long[] requested, long[] granted, long[] trackerBits, long lastUsed) {
+        return score(compiled(), requested, granted, trackerBits, lastUsed, System.currentTimeMillis());
+    }
+
+    /** Scores every app in one pass; each app's {@link AppSummary#getLastUsed()} supplies the recency factor. */
+    public int[] scoreAll(List<AppSummary> apps) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        long now = System.currentTimeMillis();
+        Compiled current = compiled();
+        int[] scores = new int[apps.size()];
+        for (int i = 0; i < scores.length; i++) {
+            AppSummary app = apps.get(i);
+            scores[i] = score(current, app.getPermissionBits(), app.getGrantedBits(), app.getTrackerBits(),
+                    app.getLastUsed(), now);
+        }
+        Log.d(TAG, "Scored " + scores.length + " apps in " + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + " us");
+        return scores;
+    }
+
+    public static AppInfo.RiskLevel levelOf(int score) {
+        if (score >= HIGH_THRESHOLD) return AppInfo.RiskLevel.HIGH;
+        if (score >= MEDIUM_THRESHOLD) return AppInfo.RiskLevel.MEDIUM;
+        return AppInfo.RiskLevel.LOW;
+    }
+
+    private static int score(Compiled weights, long[] requested, long[] granted, long[] trackerBits,
+                             long lastUsed, long now) {
+        float total = 0;
+        for (int id = Bits.nextSetBit(requested, 0); id >= 0; id = Bits.nextSetBit(requested, id + 1)) {
+            // Ids interned after the last compile fall back to the default weight
+            if (id < weights.permissionCount) {
+                total += Bits.contains(granted, id) ? weights.grantedWeight[id] : weights.deniedWeight[id];
+            } else {
+                total += weights.weights.defaultPermissionWeight
+                        * (Bits.contains(granted, id) ? weights.weights.grantedFactor : weights.weights.deniedFactor);
+            }
+        }
+        for (int id = Bits.nextSetBit(trackerBits, 0); id >= 0; id = Bits.nextSetBit(trackerBits, id + 1)) {
+            total += id < weights.trackerWeight.length ? weights.trackerWeight[id] : weights.weights.defaultTrackerWeight;
+        }
+        if (lastUsed > 0) {
+            long age = now - lastUsed;
+            if (age < DAY_MS) {
+                total *= weights.weights.usedLastDayFactor;
+            } else if (age < WEEK_MS) {
+                total *= weights.weights.usedLastWeekFactor;
+            }
+        }
+        return Math.min(Math.round(total), 100);
+    }
+
+    // Resolves permissions interned since the last call, so new ids get their weights
+    private Compiled compiled() {
+        Compiled current = compiled;
+        return current.permissionCount < permissions.size() ? extendCompiled() : current;
+    }
+
+    // Serialized so two extensions never write the same spare slots
+    private synchronized Compiled extendCompiled() {
+        Compiled current = compiled;
+        if (current.permissionCount < permissions.size()) {
+            current = current.extend(permissions);
+            compiled = current;
+        }
+        return current;
+    }
+}
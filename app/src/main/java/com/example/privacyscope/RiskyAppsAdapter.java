@@ -11,20 +11,22 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.chip.Chip;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class RiskyAppsAdapter extends RecyclerView.Adapter<RiskyAppsAdapter.ViewHolder> {
+public class RiskyAppsAdapter extends ListAdapter<AppRow, RiskyAppsAdapter.ViewHolder> {
 
-    private final List<AppInfo> riskyApps;
     private final Context context;
 
-    public RiskyAppsAdapter(List<AppInfo> riskyApps, Context context) {
-        this.riskyApps = riskyApps;
+    public RiskyAppsAdapter(Context context) {
+        super(AppRow.DIFF);
         this.context = context;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -36,44 +38,44 @@ public class RiskyAppsAdapter extends RecyclerView.Adapter<RiskyAppsAdapter.View
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = riskyApps.get(position);
-
-        holder.appIcon.setImageDrawable(app.getIcon());
-        holder.appName.setText(app.getAppName());
-        holder.riskScore.setText("Risk Score: " + app.getRiskScore());
-
-        AppInfo.RiskLevel level = app.getRiskLevel();
-        holder.riskChip.setText(level.toString());
-
-        int chipColorRes;
-        switch (level) {
-            case HIGH:
-                chipColorRes = R.color.risk_high;
-                break;
-            case MEDIUM:
-                chipColorRes = R.color.risk_medium;
-                break;
-            default: // LOW
-                chipColorRes = R.color.risk_low;
-                break;
-        }
+        AppRow row = getItem(position);
+
+        IconLoader.getInstance(holder.itemView.getContext()).load(holder.appIcon, row.packageName);
+        holder.appName.setText(row.title);
+        holder.riskScore.setText(row.subtitle);
+        holder.riskChip.setText(row.riskLabel);
 
         // --- THIS IS THE FIX ---
         // This is a more robust way to set the background color that respects themes.
-        holder.riskChip.setChipBackgroundColor(ColorStateList.valueOf(ContextCompat.getColor(context, chipColorRes)));
+        holder.riskChip.setChipBackgroundColor(ColorStateList.valueOf(ContextCompat.getColor(context, row.riskColorRes)));
         // --- END OF FIX ---
 
 
+        DetailPrefetcher.prefetchOnPress(holder.itemView, row.packageName);
         holder.itemView.setOnClickListener(v -> {
             Intent intent = new Intent(context, AppDetailActivity.class);
-            intent.putExtra("PACKAGE_NAME", app.getPackageName());
+            intent.putExtra("PACKAGE_NAME", row.packageName);
             context.startActivity(intent);
         });
     }
 
     @Override
-    public int getItemCount() {
-        return riskyApps.size();
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    /** Shows {@code apps} in the given order; rows are diffed against the shown ones off the main thread. */
+    public void submitApps(List<AppSummary> apps) {
+        List<AppRow> rows = new ArrayList<>(apps.size());
+        for (AppSummary app : apps) {
+            rows.add(new AppRow(app, "Risk Score: " + app.getRiskScore()));
+        }
+        submitList(rows);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        IconLoader.getInstance(holder.itemView.getContext()).cancel(holder.appIcon);
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -91,4 +93,3 @@ public class RiskyAppsAdapter extends RecyclerView.Adapter<RiskyAppsAdapter.View
         }
     }
 }
-
@@ -0,0 +1,194 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk copy of the last {@link ScanSnapshot}, so a cold start can show results immediately.
+ *
+ * <p>Layout: a header, then a string dictionary holding every package name, label, permission
+ * and tracker name once, then one {@link AppSummary} record per app that refers to strings by
+ * dictionary index. Permission and tracker ids are only valid within one process, so the sets
+ * are stored by name and re-interned on load. Each record carries versionCode and
+ * lastUpdateTime, so the follow-up incremental scan can tell which entries are stale, and the
+ * last-used time the scan saw in the {@link UsageIndex}.
+ * Counts and indices are written as varints. A cache written in the other tracker scan mode
+ * (see {@link TrackerDatabase#setDeepScan}) is not used.
+ */
+final class ScanCache {
+
+    private static final String TAG = "PrivacyScope";
+    private static final String FILE_NAME = "scan_snapshot.bin";
+    private static final int MAGIC = 0x50534331; // "PSC1"
+    private static final int FORMAT_VERSION = 1;
+
+    private final AtomicFile file;
+
+    private final PermissionRegistry permissions;
+    private final TrackerDatabase trackers;
+
+    ScanCache(Context context, PermissionRegistry permissions, TrackerDatabase trackers) {
+        this.permissions = permissions;
+        this.trackers = trackers;
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /** Returns the stored snapshot as version 1, or null if there is no usable cache. */
+    ScanSnapshot load() {
+        long start = SystemClock.elapsedRealtime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            // Results from the other tracker scan mode would hide or invent trackers until a full rescan
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readBoolean() != trackers.isDeepScan()) {
+                file.delete();
+                return null;
+            }
+            long scannedAtMillis = in.readLong();
+            String[] dictionary = new String[readVarInt(in)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readUTF();
+            }
+
+            AppInfo.RiskLevel[] levels = AppInfo.RiskLevel.values();
+            int appCount = readVarInt(in);
+            List<AppSummary> apps = new ArrayList<>(appCount);
+            for (int a = 0; a < appCount; a++) {
+                String packageName = dictionary[readVarInt(in)];
+                int uid = readVarInt(in);
+                String appName = dictionary[readVarInt(in)];
+                long versionCode = in.readLong();
+                long lastUpdateTime = in.readLong();
+                long lastUsed = in.readLong();
+                int riskScore = in.readUnsignedByte();
+                AppInfo.RiskLevel riskLevel = levels[in.readUnsignedByte()];
+                // Each permission is written as (dictionary index << 1 | granted)
+                Bits.Builder requested = new Bits.Builder();
+                Bits.Builder granted = new Bits.Builder();
+                int permissionCount = readVarInt(in);
+                for (int p = 0; p < permissionCount; p++) {
+                    int value = readVarInt(in);
+                    int id = permissions.intern(dictionary[value >>> 1]).getId();
+                    requested.add(id);
+                    if ((value & 1) != 0) granted.add(id);
+                }
+                Bits.Builder trackerBits = new Bits.Builder();
+                int trackerCount = readVarInt(in);
+                for (int t = 0; t < trackerCount; t++) {
+                    int id = trackers.findId(dictionary[readVarInt(in)]);
+                    if (id >= 0) trackerBits.add(id);
+                }
+                apps.add(new AppSummary(packageName, uid, appName, versionCode, lastUpdateTime, lastUsed, riskScore,
+                        riskLevel, requested.build(), granted.build(), trackerBits.build()));
+            }
+            Log.d(TAG, "Loaded " + apps.size() + " cached apps in " + (SystemClock.elapsedRealtime() - start) + " ms");
+            return new ScanSnapshot(1, scannedAtMillis, apps);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or truncated cache: drop it, the next scan rewrites it
+            Log.w(TAG, "Discarding unreadable scan cache", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    void save(ScanSnapshot snapshot) {
+        List<AppSummary> apps = snapshot.getAppsByName();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (AppSummary app : apps) {
+            intern(app.getPackageName(), ids, dictionary);
+            intern(app.getAppName(), ids, dictionary);
+            long[] requested = app.getPermissionBits();
+            for (int id = Bits.nextSetBit(requested, 0); id >= 0; id = Bits.nextSetBit(requested, id + 1)) {
+                intern(permissions.get(id).getName(), ids, dictionary);
+            }
+            long[] trackerBits = app.getTrackerBits();
+            for (int id = Bits.nextSetBit(trackerBits, 0); id >= 0; id = Bits.nextSetBit(trackerBits, id + 1)) {
+                intern(trackers.getName(id), ids, dictionary);
+            }
+        }
+
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(trackers.isDeepScan());
+            out.writeLong(snapshot.getScannedAtMillis());
+            writeVarInt(out, dictionary.size());
+            for (String value : dictionary) {
+                out.writeUTF(value);
+            }
+
+            writeVarInt(out, apps.size());
+            for (AppSummary app : apps) {
+                writeVarInt(out, ids.get(app.getPackageName()));
+                writeVarInt(out, app.getUid());
+                writeVarInt(out, ids.get(app.getAppName()));
+                out.writeLong(app.getVersionCode());
+                out.writeLong(app.getLastUpdateTime());
+                out.writeLong(app.getLastUsed());
+                out.writeByte(app.getRiskScore());
+                out.writeByte(app.getRiskLevel().ordinal());
+                long[] requested = app.getPermissionBits();
+                long[] granted = app.getGrantedBits();
+                writeVarInt(out, app.getDangerousPermissionCount());
+                for (int id = Bits.nextSetBit(requested, 0); id >= 0; id = Bits.nextSetBit(requested, id + 1)) {
+                    int index = ids.get(permissions.get(id).getName());
+                    writeVarInt(out, index << 1 | (Bits.contains(granted, id) ? 1 : 0));
+                }
+                long[] trackerBits = app.getTrackerBits();
+                writeVarInt(out, app.getTrackerCount());
+                for (int id = Bits.nextSetBit(trackerBits, 0); id >= 0; id = Bits.nextSetBit(trackerBits, id + 1)) {
+                    writeVarInt(out, ids.get(trackers.getName(id)));
+                }
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write scan cache", e);
+            if (stream != null) file.failWrite(stream);
+        }
+    }
+
+    private static void intern(String value, Map<String, Integer> ids, List<String> dictionary) {
+        if (!ids.containsKey(value)) {
+            ids.put(value, dictionary.size());
+            dictionary.add(value);
+        }
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.privacyscope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed between two scans, per package: apps installed or removed, dangerous
+ * permissions newly requested or granted, new trackers, and risk level changes.
+ *
+ * <p>Only what the apps themselves changed is reported. A risk level change is listed only
+ * alongside a change to the app's permissions, grants or trackers, since the level also moves
+ * with the weights and with how recently the app was used. Trackers are left out when the two
+ * scans looked for them differently (see {@link TrackerDatabase#setDeepScan}).
+ *
+ * <p>Apps are compared with bitset operations on their permission, grant and tracker sets, and
+ * summaries that are the same object in both snapshots (unchanged apps are carried over as is)
+ * are skipped outright. When the new snapshot is a delta on the old one, only its changed and
+ * removed packages are visited at all. Descriptions are built here, on the scan thread, so
+ * screens only display them.
+ */
+public final class ScanChanges {
+
+    public enum Kind { INSTALLED, REMOVED, CHANGED }
+
+    public static final class AppChange {
+        private final Kind kind;
+        private final String packageName;
+        private final String appName;
+        private final AppInfo.RiskLevel oldLevel;
+        private final AppInfo.RiskLevel newLevel;
+        private final String description;
+
+        private AppChange(Kind kind, String packageName, String appName, AppInfo.RiskLevel oldLevel,
+                          AppInfo.RiskLevel newLevel, String description) {
+            this.kind = kind;
+            this.packageName = packageName;
+            this.appName = appName;
+            this.oldLevel = oldLevel;
+            this.newLevel = newLevel;
+            this.description = description;
+        }
+
+        public Kind getKind() { return kind; }
+        public String getPackageName() { return packageName; }
+        public String getAppName() { return appName; }
+        // Null for installed apps
+        public AppInfo.RiskLevel getOldLevel() { return oldLevel; }
+        // Null for removed apps
+        public AppInfo.RiskLevel getNewLevel() { return newLevel; }
+        /** One line, e.g. "Risk MEDIUM → HIGH · Newly granted: Camera · New trackers: Facebook Ads". */
+        public String getDescription() { return description; }
+    }
+
+    private final long previousScanAtMillis;
+    private final long scannedAtMillis;
+    private final List<AppChange> changes;
+
+    private ScanChanges(long previousScanAtMillis, long scannedAtMillis, List<AppChange> changes) {
+        this.previousScanAtMillis = previousScanAtMillis;
+        this.scannedAtMillis = scannedAtMillis;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public long getPreviousScanAtMillis() { return previousScanAtMillis; }
+    public long getScannedAtMillis() { return scannedAtMillis; }
+    /** Changes in app name order. */
+    public List<AppChange> getChanges() { return changes; }
+    public boolean isEmpty() { return changes.isEmpty(); }
+
+    // Display names for the ids in the bitsets; tests supply their own instead of the Android-backed tables
+    interface Names {
+        String permission(int id);
+        List<String> trackers(long[] bits);
+    }
+
+    static ScanChanges between(ScanSnapshot previous, ScanSnapshot current, boolean compareTrackers,
+                               PermissionRegistry permissions, TrackerDatabase trackers) {
+        return between(previous, current, compareTrackers, new Names() {
+            @Override
+            public String permission(int id) {
+                return permissions.get(id).getShortName();
+            }
+
+            @Override
+            public List<String> trackers(long[] bits) {
+                return trackers.namesOf(bits);
+            }
+        });
+    }
+
+    static ScanChanges between(ScanSnapshot previous, ScanSnapshot current, boolean compareTrackers, Names names) {
+        List<AppChange> changes = new ArrayList<>();
+        if (current.canApplyDeltaTo(previous.getVersion())) {
+            for (String packageName : current.getChangedPackages()) {
+                compare(previous.findApp(packageName), current.findApp(packageName), compareTrackers, names, changes);
+            }
+            for (String packageName : current.getRemovedPackages()) {
+                compare(previous.findApp(packageName), null, compareTrackers, names, changes);
+            }
+        } else {
+            for (AppSummary app : current.getAppsByName()) {
+                compare(previous.findApp(app.getPackageName()), app, compareTrackers, names, changes);
+            }
+            for (AppSummary app : previous.getAppsByName()) {
+                if (current.findApp(app.getPackageName()) == null) {
+                    compare(app, null, compareTrackers, names, changes);
+                }
+            }
+        }
+        Collections.sort(changes, (c1, c2) -> c1.appName.compareToIgnoreCase(c2.appName));
+        return new ScanChanges(previous.getScannedAtMillis(), current.getScannedAtMillis(), changes);
+    }
+
+    private static void compare(AppSummary before, AppSummary after, boolean compareTrackers, Names names,
+                                List<AppChange> out) {
+        if (before == after) return;
+        if (before == null) {
+            String description = "Installed · Risk " + after.getRiskLevel()
+                    + " · " + after.getGrantedPermissionCount() + " granted permissions"
+                    + " · " + after.getTrackerCount() + " trackers";
+            out.add(new AppChange(Kind.INSTALLED, after.getPackageName(), after.getAppName(), null,
+                    after.getRiskLevel(), description));
+            return;
+        }
+        if (after == null) {
+            out.add(new AppChange(Kind.REMOVED, before.getPackageName(), before.getAppName(), before.getRiskLevel(),
+                    null, "Removed"));
+            return;
+        }
+
+        // Re-scored or updated apps usually gain nothing; tell without allocating the differences
+        boolean gainedNothing = Bits.containsAll(before.getGrantedBits(), after.getGrantedBits())
+                && Bits.containsAll(before.getPermissionBits(), after.getPermissionBits())
+                && (!compareTrackers || Bits.containsAll(before.getTrackerBits(), after.getTrackerBits()));
+        boolean levelMoved = before.getRiskLevel() != after.getRiskLevel();
+        if (gainedNothing && !levelMoved) return;
+        // The level also moves with the weights and recency; only report it if the app changed too
+        boolean levelChanged = levelMoved && (!gainedNothing
+                || !Bits.containsAll(after.getGrantedBits(), before.getGrantedBits())
+                || !Bits.containsAll(after.getPermissionBits(), before.getPermissionBits())
+                || compareTrackers && !Bits.containsAll(after.getTrackerBits(), before.getTrackerBits()));
+        if (gainedNothing && !levelChanged) return;
+
+        long[] newGrants = Bits.andNot(after.getGrantedBits(), before.getGrantedBits());
+        // Requested for the first time but not granted; new grants are listed on their own
+        long[] newRequests = Bits.andNot(Bits.andNot(after.getPermissionBits(), before.getPermissionBits()),
+                after.getGrantedBits());
+        long[] newTrackers = compareTrackers ? Bits.andNot(after.getTrackerBits(), before.getTrackerBits())
+                : Bits.EMPTY;
+        if (!levelChanged && Bits.isEmpty(newGrants) && Bits.isEmpty(newRequests) && Bits.isEmpty(newTrackers)) {
+            return;
+        }
+
+        StringBuilder description = new StringBuilder();
+        if (levelChanged) {
+            description.append("Risk ").append(before.getRiskLevel()).append(" → ").append(after.getRiskLevel());
+        }
+        appendPermissions(description, "Newly granted: ", newGrants, names);
+        appendPermissions(description, "Now requests: ", newRequests, names);
+        if (!Bits.isEmpty(newTrackers)) {
+            separate(description).append("New trackers: ").append(join(names.trackers(newTrackers)));
+        }
+        out.add(new AppChange(Kind.CHANGED, after.getPackageName(), after.getAppName(), before.getRiskLevel(),
+                after.getRiskLevel(), description.toString()));
+    }
+
+    private static void appendPermissions(StringBuilder description, String label, long[] bits, Names names) {
+        if (Bits.isEmpty(bits)) return;
+        separate(description).append(label);
+        boolean first = true;
+        for (int id = Bits.nextSetBit(bits, 0); id >= 0; id = Bits.nextSetBit(bits, id + 1)) {
+            if (!first) description.append(", ");
+            description.append(names.permission(id));
+            first = false;
+        }
+    }
+
+    private static StringBuilder separate(StringBuilder description) {
+        return description.length() > 0 ? description.append(" · ") : description;
+    }
+
+    private static String join(List<String> names) {
+        StringBuilder joined = new StringBuilder();
+        for (String name : names) {
+            if (joined.length() > 0) joined.append(", ");
+            joined.append(name);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.JsonWriter;
+import android.util.Log;
+import android.util.SparseLongArray;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Machine-readable export of every scanned app as JSON Lines or CSV, optionally gzip- or
+ * zip-compressed on the fly. Apps are visited one at a time: each one's details are loaded
+ * through {@link ScanRepository#loadDetails}, written as one record and dropped, so time grows
+ * linearly with the number of apps and memory stays the same per app. Call off the main thread.
+ *
+ * <p>Times are epoch milliseconds, 0 if unknown. Per-permission and sensitive-access times
+ * come from the last scan's AppOps snapshot or, where this app may not read the device-wide
+ * one, from one per-app AppOps call; last-used and foreground times come from the usage index.
+ * Both are 0 without usage access.
+ */
+final class ScanExporter {
+
+    private static final String TAG = "PrivacyScope";
+
+    enum Format {
+        JSON_LINES(".jsonl", "application/x-ndjson"),
+        CSV(".csv", "text/csv");
+
+        final String extension;
+        final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+    }
+
+    enum Compression {
+        NONE("", null),
+        GZIP(".gz", "application/gzip"),
+        ZIP(".zip", "application/zip");
+
+        final String extension;
+        // Null keeps the format's own type
+        final String mimeType;
+
+        Compression(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+    }
+
+    /** Called on the exporting thread after each app. */
+    interface ProgressListener {
+        void onProgress(int appsDone, int appCount);
+    }
+
+    private static final String[] CSV_COLUMNS = {
+            "package", "name", "uid", "version_name", "version_code", "last_update_time",
+            "risk_score", "risk_level", "last_used", "foreground_ms", "last_sensitive_access",
+            "permissions", "granted_permissions", "permission_last_used", "trackers"
+    };
+
+    private final ScanRepository repository;
+    private final AppOpsReader opsReader;
+    private final AppOpsSnapshot appOps;
+    private final UsageIndex.Table usage;
+
+    private ScanExporter(Context context, UsageIndex.Table usage) {
+        this.repository = ScanRepository.getInstance(context);
+        this.opsReader = AppOpsReader.getInstance(context);
+        this.appOps = repository.getAppOps();
+        this.usage = usage;
+    }
+
+    /**
+     * Exports {@code apps} to a new file in the report directory and returns it. Apps that were
+     * uninstalled since the scan are skipped.
+     */
+    static File export(Context context, List<AppSummary> apps, Format format, Compression compression,
+                       ProgressListener listener) throws IOException {
+        UsageIndex usageIndex = UsageIndex.getInstance(context);
+        ScanExporter exporter = new ScanExporter(context, usageIndex.hasPermission() ? usageIndex.get() : null);
+
+        String name = "PrivacyScope_Export_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        File file = new File(ReportFile.directory(context), name + format.extension + compression.extension);
+        try (Writer out = open(file, name + format.extension, compression)) {
+            if (format == Format.CSV) {
+                exporter.writeCsv(out, apps, listener);
+            } else {
+                exporter.writeJsonLines(out, apps, listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    static String mimeTypeOf(Format format, Compression compression) {
+        return compression.mimeType != null ? compression.mimeType : format.mimeType;
+    }
+
+    private static Writer open(File file, String entryName, Compression compression) throws IOException {
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            switch (compression) {
+                case GZIP:
+                    stream = new GZIPOutputStream(stream);
+                    break;
+                case ZIP:
+                    ZipOutputStream zip = new ZipOutputStream(stream);
+                    zip.putNextEntry(new ZipEntry(entryName));
+                    stream = zip;
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        // Closing the writer finishes the gzip trailer or zip directory
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    }
+
+    private void writeJsonLines(Writer out, List<AppSummary> apps, ProgressListener listener) throws IOException {
+        // JsonWriter writes straight through to out, so the newline between records lands in order
+        JsonWriter json = new JsonWriter(out);
+        json.setLenient(true);
+        for (int i = 0; i < apps.size(); i++) {
+            AppInfo app = load(apps.get(i));
+            if (app != null) {
+                writeJson(json, app);
+                out.write('\n');
+            }
+            listener.onProgress(i + 1, apps.size());
+        }
+        json.flush();
+    }
+
+    private void writeJson(JsonWriter json, AppInfo app) throws IOException {
+        json.beginObject();
+        json.name("package").value(app.getPackageName());
+        json.name("name").value(app.getAppName());
+        json.name("uid").value(app.getUid());
+        json.name("versionName").value(app.getVersionName());
+        json.name("versionCode").value(app.getVersionCode());
+        json.name("lastUpdateTime").value(app.getLastUpdateTime());
+        json.name("riskScore").value(app.getRiskScore());
+        json.name("riskLevel").value(app.getRiskLevel().name());
+        json.name("lastUsed").value(lastUsed(app));
+        json.name("foregroundMs").value(foregroundTime(app));
+        SparseLongArray ops = opsOf(app);
+        json.name("lastSensitiveAccess").value(latestOf(ops));
+
+        json.name("permissions").beginArray();
+        for (AppInfo.PermissionDetail permission : app.getDangerousPermissions()) {
+            json.beginObject();
+            json.name("name").value(permission.permission.getName());
+            json.name("group").value(permission.permission.getGroup());
+            json.name("granted").value(permission.isGranted);
+            json.name("lastUsed").value(lastUsed(ops, permission));
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("trackers").beginArray();
+        for (String tracker : app.getDetectedTrackers()) {
+            json.value(tracker);
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private void writeCsv(Writer out, List<AppSummary> apps, ProgressListener listener) throws IOException {
+        for (int c = 0; c < CSV_COLUMNS.length; c++) {
+            if (c > 0) out.write(',');
+            out.write(CSV_COLUMNS[c]);
+        }
+        out.write("\r\n");
+
+        // Lists are joined with ';' inside one field; reused for every app
+        StringBuilder permissions = new StringBuilder();
+        StringBuilder granted = new StringBuilder();
+        StringBuilder permissionLastUsed = new StringBuilder();
+        StringBuilder trackers = new StringBuilder();
+        for (int i = 0; i < apps.size(); i++) {
+            AppInfo app = load(apps.get(i));
+            if (app != null) {
+                permissions.setLength(0);
+                granted.setLength(0);
+                permissionLastUsed.setLength(0);
+                trackers.setLength(0);
+                SparseLongArray ops = opsOf(app);
+                for (AppInfo.PermissionDetail permission : app.getDangerousPermissions()) {
+                    String name = permission.permission.getName();
+                    join(permissions, name);
+                    if (permission.isGranted) join(granted, name);
+                    long lastUsed = lastUsed(ops, permission);
+                    if (lastUsed > 0) join(permissionLastUsed, name).append('=').append(lastUsed);
+                }
+                for (String tracker : app.getDetectedTrackers()) {
+                    join(trackers, tracker);
+                }
+
+                writeField(out, app.getPackageName(), false);
+                writeField(out, app.getAppName(), true);
+                writeField(out, String.valueOf(app.getUid()), true);
+                writeField(out, app.getVersionName(), true);
+                writeField(out, String.valueOf(app.getVersionCode()), true);
+                writeField(out, String.valueOf(app.getLastUpdateTime()), true);
+                writeField(out, String.valueOf(app.getRiskScore()), true);
+                writeField(out, app.getRiskLevel().name(), true);
+                writeField(out, String.valueOf(lastUsed(app)), true);
+                writeField(out, String.valueOf(foregroundTime(app)), true);
+                writeField(out, String.valueOf(latestOf(ops)), true);
+                writeField(out, permissions, true);
+                writeField(out, granted, true);
+                writeField(out, permissionLastUsed, true);
+                writeField(out, trackers, true);
+                out.write("\r\n");
+            }
+            listener.onProgress(i + 1, apps.size());
+        }
+    }
+
+    private AppInfo load(AppSummary summary) {
+        try {
+            return repository.loadDetails(summary.getPackageName());
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.d(TAG, "Skipping uninstalled " + summary.getPackageName() + " in export");
+            return null;
+        } catch (CancellationException e) {
+            // Interrupted: stop the export rather than skip every remaining app
+            throw e;
+        } catch (RuntimeException e) {
+            // One app that can't be read (e.g. mid-update) shouldn't cost the whole export
+            Log.w(TAG, "Skipping " + summary.getPackageName() + " in export", e);
+            return null;
+        }
+    }
+
+    private long lastUsed(AppInfo app) {
+        return usage == null ? 0 : usage.getLastUsed(app.getPackageName());
+    }
+
+    private long foregroundTime(AppInfo app) {
+        return usage == null ? 0 : usage.getForegroundTime(app.getPackageName());
+    }
+
+    // The app's last access per op code, from the scan's snapshot or else one per-app call that
+    // only covers granted permissions. Like the detail screen, that call needs usage access
+    private SparseLongArray opsOf(AppInfo app) {
+        if (!appOps.isEmpty()) return appOps.opsFor(app.getUid());
+        if (usage == null) return new SparseLongArray();
+        return opsReader.readLastAccessTimes(app.getUid(), app.getPackageName(), app.getDangerousPermissions());
+    }
+
+    private long lastUsed(SparseLongArray ops, AppInfo.PermissionDetail permission) {
+        int op = opsReader.opCodeOf(permission.permission);
+        return op == AppOpsReader.OP_NONE ? 0 : ops.get(op);
+    }
+
+    private static long latestOf(SparseLongArray ops) {
+        long latest = 0;
+        for (int i = 0; i < ops.size(); i++) {
+            latest = Math.max(latest, ops.valueAt(i));
+        }
+        return latest;
+    }
+
+    private static StringBuilder join(StringBuilder list, String item) {
+        if (list.length() > 0) list.append(';');
+        return list.append(item);
+    }
+
+    /** Writes one RFC 4180 field, quoted only when it contains a comma, quote or line break. */
+    private static void writeField(Writer out, CharSequence value, boolean separator) throws IOException {
+        if (separator) out.write(',');
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
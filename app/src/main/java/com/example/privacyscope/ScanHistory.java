@@ -0,0 +1,550 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local time series of scan results, so risk and grants can be followed across app updates.
+ *
+ * <p>Every recorded scan is appended to {@code scan_history.bin} as one length-prefixed delta
+ * record against the scan before it: the device-wide totals, then only the apps whose risk
+ * score, granted permission count or tracker count changed, and the apps that were removed.
+ * Package names are written once, the first time they appear. In memory each app is a step
+ * series of those change points, so a trend over any range is two binary searches and a copy.
+ *
+ * <p>Old history is downsampled about once a day: every scan of the last 30 days is kept, then
+ * the last scan of each day for a year, then the last scan of each week.
+ *
+ * <p>The file is read on first use; call all methods off the main thread.
+ */
+public final class ScanHistory {
+
+    private static final String TAG = "PrivacyScope";
+    private static final String FILE_NAME = "scan_history.bin";
+    private static final int MAGIC = 0x50534831; // "PSH1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long KEEP_ALL_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long KEEP_DAILY_MS = TimeUnit.DAYS.toMillis(365);
+
+    // A point's value packs score | granted << 8 | trackers << 16 | INSTALLED; 0 means removed
+    private static final int INSTALLED = 1 << 24;
+
+    private static ScanHistory instance;
+
+    /** One app's recorded values; each point holds until the next one. */
+    public static final class AppTrend {
+        static final AppTrend EMPTY = new AppTrend(new long[0], new int[0]);
+
+        private final long[] times;
+        private final int[] values;
+
+        private AppTrend(long[] times, int[] values) {
+            this.times = times;
+            this.values = values;
+        }
+
+        public int size() { return times.length; }
+        public long getTime(int i) { return times[i]; }
+        public boolean isInstalled(int i) { return values[i] != 0; }
+        public int getRiskScore(int i) { return values[i] & 0xFF; }
+        public int getGrantedCount(int i) { return (values[i] >> 8) & 0xFF; }
+        public int getTrackerCount(int i) { return (values[i] >> 16) & 0xFF; }
+    }
+
+    /** Device-wide totals, one point per recorded scan. */
+    public static final class DeviceTrend {
+        private final long[] times;
+        private final int[] appCounts;
+        private final int[] scoreSums;
+        private final int[] highRiskCounts;
+
+        private DeviceTrend(long[] times, int[] appCounts, int[] scoreSums, int[] highRiskCounts) {
+            this.times = times;
+            this.appCounts = appCounts;
+            this.scoreSums = scoreSums;
+            this.highRiskCounts = highRiskCounts;
+        }
+
+        public int size() { return times.length; }
+        public long getTime(int i) { return times[i]; }
+        public int getAppCount(int i) { return appCounts[i]; }
+        public int getHighRiskCount(int i) { return highRiskCounts[i]; }
+        public float getAverageScore(int i) { return appCounts[i] == 0 ? 0 : (float) scoreSums[i] / appCounts[i]; }
+    }
+
+    // Change points of one app, in time order
+    private static final class Series {
+        long[] times = new long[4];
+        int[] values = new int[4];
+        int size;
+
+        void add(long time, int value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size++] = value;
+        }
+
+        int last() {
+            return size == 0 ? 0 : values[size - 1];
+        }
+    }
+
+    private final AtomicFile file;
+    private boolean loaded;
+    private final Map<String, Series> series = new HashMap<>();
+    // Dictionary ids of the names in the file, in the order they were first written
+    private Map<String, Integer> nameIds = new HashMap<>();
+    private long[] scanTimes = new long[16];
+    private int[] appCounts = new int[16];
+    private int[] scoreSums = new int[16];
+    private int[] highRiskCounts = new int[16];
+    private int scanCount;
+    private long lastCompactionCheck;
+
+    private ScanHistory(Context context) {
+        this.file = new AtomicFile(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+    }
+
+    // An empty history that only lives in memory, for tests of the stream methods below
+    ScanHistory() {
+        this.file = null;
+        this.loaded = true;
+    }
+
+    public static synchronized ScanHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanHistory(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Appends {@code snapshot} as a delta against the last recorded scan. Snapshots not newer than
+     * that scan (e.g. a re-score of the same results) are ignored.
+     */
+    public synchronized void record(ScanSnapshot snapshot) {
+        ensureLoaded();
+        try {
+            byte[] record = add(snapshot);
+            if (record == null) return;
+            File base = file.getBaseFile();
+            boolean empty = base.length() == 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(base, true)))) {
+                if (empty) writeHeader(out);
+                out.write(record);
+            }
+        } catch (IOException e) {
+            // Memory may now disagree with the file; start over from what the file has
+            Log.w(TAG, "Failed to append scan history", e);
+            reset();
+            return;
+        }
+        compactIfDue(snapshot.getScannedAtMillis());
+    }
+
+    /**
+     * {@code packageName}'s points between the two times. The first point is the one in effect at
+     * {@code fromMillis}, which may be older, so a chart of the range starts with a value.
+     */
+    public synchronized AppTrend getAppTrend(String packageName, long fromMillis, long toMillis) {
+        ensureLoaded();
+        Series s = series.get(packageName);
+        if (s == null) return AppTrend.EMPTY;
+        int start = Math.max(0, upperBound(s.times, s.size, fromMillis) - 1);
+        int end = upperBound(s.times, s.size, toMillis);
+        if (start >= end) return AppTrend.EMPTY;
+        return new AppTrend(Arrays.copyOfRange(s.times, start, end), Arrays.copyOfRange(s.values, start, end));
+    }
+
+    /** Device-wide totals of the scans recorded between the two times. */
+    public synchronized DeviceTrend getDeviceTrend(long fromMillis, long toMillis) {
+        ensureLoaded();
+        int start = upperBound(scanTimes, scanCount, fromMillis - 1);
+        int end = Math.max(start, upperBound(scanTimes, scanCount, toMillis));
+        return new DeviceTrend(Arrays.copyOfRange(scanTimes, start, end), Arrays.copyOfRange(appCounts, start, end),
+                Arrays.copyOfRange(scoreSums, start, end), Arrays.copyOfRange(highRiskCounts, start, end));
+    }
+
+    // --- File format. These work on streams and memory only, so tests can run them on the JVM ---
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    /**
+     * Adds {@code snapshot} to memory and returns its record, length prefix included, to append
+     * to the file. Returns null, changing nothing, if the snapshot isn't newer than the last scan.
+     */
+    byte[] add(ScanSnapshot snapshot) throws IOException {
+        long time = snapshot.getScannedAtMillis();
+        if (scanCount > 0 && time <= scanTimes[scanCount - 1]) return null;
+
+        List<AppSummary> apps = snapshot.getAppsByName();
+        List<String> changedNames = new ArrayList<>();
+        int[] changedValues = new int[apps.size() + series.size()];
+        Set<String> present = new HashSet<>(apps.size() * 2);
+        int scoreSum = 0;
+        int highRiskCount = 0;
+        for (AppSummary app : apps) {
+            int value = pack(app);
+            scoreSum += app.getRiskScore();
+            if (app.getRiskLevel() == AppInfo.RiskLevel.HIGH) highRiskCount++;
+            present.add(app.getPackageName());
+            Series s = series.get(app.getPackageName());
+            if (s == null || s.last() != value) {
+                changedValues[changedNames.size()] = value;
+                changedNames.add(app.getPackageName());
+            }
+        }
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            if (entry.getValue().last() != 0 && !present.contains(entry.getKey())) {
+                changedValues[changedNames.size()] = 0;
+                changedNames.add(entry.getKey());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changedNames.size() * 8);
+        writeRecord(new DataOutputStream(bytes), time, apps.size(), scoreSum, highRiskCount,
+                changedNames, changedValues, nameIds);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(4 + bytes.size());
+        writeFramed(new DataOutputStream(record), bytes);
+
+        addScan(time, apps.size(), scoreSum, highRiskCount);
+        for (int i = 0; i < changedNames.size(); i++) {
+            seriesOf(changedNames.get(i)).add(time, changedValues[i]);
+        }
+        return record.toByteArray();
+    }
+
+    /**
+     * Loads a history file of {@code length} bytes into this empty history, stopping at the first
+     * record that is damaged, cut short or out of order. Returns how many bytes were loaded, or
+     * -1 if the stream doesn't start with a header of this format.
+     */
+    long read(InputStream stream, long length) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        List<String> names = new ArrayList<>();
+        long validLength = 0;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return -1;
+            validLength = HEADER_SIZE;
+            while (validLength < length) {
+                int recordLength = in.readInt();
+                if (recordLength < 0 || recordLength > length - validLength - 4) break;
+                byte[] payload = new byte[recordLength];
+                in.readFully(payload);
+                readRecord(new DataInputStream(new ByteArrayInputStream(payload)), names);
+                validLength += 4 + recordLength;
+            }
+        } catch (IOException e) {
+            // Most likely a record cut short by the process dying mid-append
+        }
+        return validLength;
+    }
+
+    /** Writes the whole history as a new file, one record per scan, numbering the names afresh. */
+    void writeTo(OutputStream stream) throws IOException {
+        // Group the change points by scan
+        List<List<String>> changedNames = new ArrayList<>(scanCount);
+        int[][] changedValues = new int[scanCount][];
+        int[] changeCounts = new int[scanCount];
+        for (int k = 0; k < scanCount; k++) {
+            changedNames.add(new ArrayList<>());
+            changedValues[k] = new int[4];
+        }
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series s = entry.getValue();
+            for (int p = 0; p < s.size; p++) {
+                int k = Arrays.binarySearch(scanTimes, 0, scanCount, s.times[p]);
+                if (changeCounts[k] == changedValues[k].length) {
+                    changedValues[k] = Arrays.copyOf(changedValues[k], changeCounts[k] * 2);
+                }
+                changedValues[k][changeCounts[k]++] = s.values[p];
+                changedNames.get(k).add(entry.getKey());
+            }
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        writeHeader(out);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int k = 0; k < scanCount; k++) {
+            bytes.reset();
+            writeRecord(new DataOutputStream(bytes), scanTimes[k], appCounts[k], scoreSums[k], highRiskCounts[k],
+                    changedNames.get(k), changedValues[k], ids);
+            writeFramed(out, bytes);
+        }
+        out.flush();
+        nameIds = ids;
+    }
+
+    private static int pack(AppSummary app) {
+        return app.getRiskScore()
+                | Math.min(app.getGrantedPermissionCount(), 0xFF) << 8
+                | Math.min(app.getTrackerCount(), 0xFF) << 16
+                | INSTALLED;
+    }
+
+    // Index of the first of the n sorted times that is after key
+    private static int upperBound(long[] times, int n, long key) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Series seriesOf(String packageName) {
+        Series s = series.get(packageName);
+        if (s == null) {
+            s = new Series();
+            series.put(packageName, s);
+        }
+        return s;
+    }
+
+    private void addScan(long time, int appCount, int scoreSum, int highRiskCount) {
+        if (scanCount == scanTimes.length) {
+            int capacity = scanCount * 2;
+            scanTimes = Arrays.copyOf(scanTimes, capacity);
+            appCounts = Arrays.copyOf(appCounts, capacity);
+            scoreSums = Arrays.copyOf(scoreSums, capacity);
+            highRiskCounts = Arrays.copyOf(highRiskCounts, capacity);
+        }
+        scanTimes[scanCount] = time;
+        appCounts[scanCount] = appCount;
+        scoreSums[scanCount] = scoreSum;
+        highRiskCounts[scanCount] = highRiskCount;
+        scanCount++;
+    }
+
+    private void reset() {
+        loaded = false;
+        series.clear();
+        nameIds = new HashMap<>();
+        scanCount = 0;
+    }
+
+    // Record layout: time, app count, score sum, high-risk count, names first used here, then
+    // (name id, value) per changed app. Names without an id in ids are given the next one.
+    private static void writeRecord(DataOutputStream out, long time, int appCount, int scoreSum, int highRiskCount,
+                                    List<String> names, int[] values, Map<String, Integer> ids) throws IOException {
+        out.writeLong(time);
+        ScanCache.writeVarInt(out, appCount);
+        ScanCache.writeVarInt(out, scoreSum);
+        ScanCache.writeVarInt(out, highRiskCount);
+        int firstNewId = ids.size();
+        for (String name : names) {
+            if (!ids.containsKey(name)) ids.put(name, ids.size());
+        }
+        ScanCache.writeVarInt(out, ids.size() - firstNewId);
+        for (String name : names) {
+            if (ids.get(name) >= firstNewId) out.writeUTF(name);
+        }
+        ScanCache.writeVarInt(out, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            ScanCache.writeVarInt(out, ids.get(names.get(i)));
+            ScanCache.writeVarInt(out, values[i]);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        long start = SystemClock.elapsedRealtime();
+        long fileLength = 0;
+        long validLength = 0;
+        try (InputStream in = file.openRead()) {
+            // Read after openRead, which may have restored the file from an interrupted compaction
+            fileLength = file.getBaseFile().length();
+            validLength = read(in, fileLength);
+            if (validLength < 0) {
+                file.delete();
+                return;
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            // Only closing can fail here; read() already stopped at anything unreadable
+            Log.w(TAG, "Failed to close scan history", e);
+        }
+        // Drop a partial record at the end so the next append starts on a record boundary
+        File base = file.getBaseFile();
+        if (fileLength != validLength) {
+            Log.w(TAG, "Scan history is damaged after " + validLength + " of " + fileLength + " bytes");
+            try (RandomAccessFile raf = new RandomAccessFile(base, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to truncate scan history", e);
+            }
+        }
+        Log.d(TAG, "Loaded " + scanCount + " history scans of " + series.size() + " apps in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    // Reads the whole record before applying it, so a damaged one leaves no trace in memory
+    private void readRecord(DataInputStream in, List<String> names) throws IOException {
+        long time = in.readLong();
+        int appCount = ScanCache.readVarInt(in);
+        int scoreSum = ScanCache.readVarInt(in);
+        int highRiskCount = ScanCache.readVarInt(in);
+        String[] newNames = new String[readCount(in)];
+        for (int i = 0; i < newNames.length; i++) {
+            newNames[i] = in.readUTF();
+        }
+        int[] ids = new int[readCount(in)];
+        int[] values = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ScanCache.readVarInt(in);
+            values[i] = ScanCache.readVarInt(in);
+            if (ids[i] >= names.size() + newNames.length) throw new IOException("Bad name id " + ids[i]);
+        }
+        if (scanCount > 0 && time <= scanTimes[scanCount - 1]) throw new IOException("Scan out of order");
+
+        for (String name : newNames) {
+            nameIds.put(name, names.size());
+            names.add(name);
+        }
+        addScan(time, appCount, scoreSum, highRiskCount);
+        for (int i = 0; i < ids.length; i++) {
+            seriesOf(names.get(ids[i])).add(time, values[i]);
+        }
+    }
+
+    private static void writeFramed(DataOutputStream out, ByteArrayOutputStream record) throws IOException {
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    // A count of items of at least one byte each, checked against what is left of the record
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = ScanCache.readVarInt(in);
+        if (count < 0 || count > in.available()) throw new IOException("Bad count " + count);
+        return count;
+    }
+
+    private void compactIfDue(long now) {
+        if (now - lastCompactionCheck < DAY_MS) return;
+        lastCompactionCheck = now;
+        long start = SystemClock.elapsedRealtime();
+        if (!compact(now)) return;
+
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            writeTo(stream);
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to compact scan history", e);
+            if (stream != null) file.failWrite(stream);
+            // Memory is already compacted and its name ids may not match the file; start over from the file
+            reset();
+            return;
+        }
+        Log.d(TAG, "Compacted scan history to " + scanCount + " scans in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Downsamples scans older than the keep-all window in memory, as described on the class.
+     * Returns false, changing nothing, if there is nothing to drop.
+     */
+    boolean compact(long now) {
+        // Keep the last scan of each bucket; recent scans are buckets of their own
+        boolean[] keep = new boolean[scanCount];
+        int kept = 0;
+        for (int i = 0; i < scanCount; i++) {
+            keep[i] = i == scanCount - 1 || bucketOf(scanTimes[i], now) == -1
+                    || bucketOf(scanTimes[i], now) != bucketOf(scanTimes[i + 1], now);
+            if (keep[i]) kept++;
+        }
+        if (kept == scanCount) return false;
+
+        // Every change moves to the kept scan that ends its bucket; the latest change in a bucket wins
+        int[] keptIndex = new int[scanCount];
+        for (int i = scanCount - 1; i >= 0; i--) {
+            keptIndex[i] = keep[i] ? i : keptIndex[i + 1];
+        }
+        Map<String, Series> compacted = new HashMap<>();
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series s = entry.getValue();
+            Series c = new Series();
+            for (int p = 0; p < s.size; p++) {
+                int scan = Math.min(upperBound(scanTimes, scanCount, s.times[p]) - 1, scanCount - 1);
+                long target = scanTimes[keptIndex[Math.max(scan, 0)]];
+                int value = s.values[p];
+                if (c.size > 0 && c.times[c.size - 1] == target) c.size--;
+                if (c.size > 0 ? c.values[c.size - 1] == value : value == 0) continue;
+                c.add(target, value);
+            }
+            if (c.size > 0) compacted.put(entry.getKey(), c);
+        }
+
+        long[] times = new long[kept];
+        int[] apps = new int[kept];
+        int[] sums = new int[kept];
+        int[] highs = new int[kept];
+        for (int i = 0, k = 0; i < scanCount; i++) {
+            if (!keep[i]) continue;
+            times[k] = scanTimes[i];
+            apps[k] = appCounts[i];
+            sums[k] = scoreSums[i];
+            highs[k] = highRiskCounts[i];
+            k++;
+        }
+
+        series.clear();
+        series.putAll(compacted);
+        scanTimes = times;
+        appCounts = apps;
+        scoreSums = sums;
+        highRiskCounts = highs;
+        scanCount = kept;
+        return true;
+    }
+
+    // -1 for scans recent enough to keep as they are, else a local day or week number
+    private static long bucketOf(long time, long now) {
+        long age = now - time;
+        if (age < KEEP_ALL_MS) return -1;
+        long day = (time + TimeZone.getDefault().getOffset(time)) / DAY_MS;
+        return age < KEEP_DAILY_MS ? day * 2 : (day / 7) * 2 + 1;
+    }
+}
@@ -0,0 +1,592 @@
+package com.example.privacyscope;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide owner of the installed-app scan.
+ * Screens register a {@link Listener} and read the shared {@link ScanSnapshot} instead of
+ * scanning PackageManager themselves. A new scan only runs when asked for, when the
+ * current snapshot is stale, or when a package broadcast reports an install, update or removal.
+ * Rescans are incremental: only packages whose version or update time changed are re-analyzed.
+ * On a cold start the snapshot saved by {@link ScanCache} is shown first and then verified by
+ * an incremental scan. Without a cache, the first scan streams finished apps to listeners in
+ * small batches so screens can fill in before the whole scan is done.
+ * Snapshots hold {@link AppSummary} objects only; the full {@link AppInfo} for an app is built
+ * by {@link #loadDetails(String)} when a screen needs it and kept in a small LRU cache.
+ * Risk scores come from one {@link RiskScorer} batch pass over each new snapshot, so changing
+ * the weights re-scores the current snapshot without going back to PackageManager.
+ * Except for loadDetails and prefetchDetails, all public methods must be called on the main thread.
+ */
+public final class ScanRepository {
+
+    private static final String TAG = "PrivacyScope";
+    private static final long STALE_AFTER_MS = TimeUnit.MINUTES.toMillis(10);
+    // Installs often arrive as a burst of ADDED/REPLACED/CHANGED broadcasts; scan once after they settle
+    private static final long PACKAGE_EVENT_DELAY_MS = 500;
+    private static final int DETAIL_CACHE_SIZE = 16;
+    private static final int DETAIL_PREFETCH_THREADS = 2;
+    private static final String PREFS_NAME = "scan_settings";
+    private static final String PREF_DEEP_SCAN = "deep_scan";
+    private static final String PREF_RISK_PRESET = "risk_preset";
+    // Trackers are matched against every component type, so all four are requested
+    static final int SCAN_FLAGS = PackageManager.GET_PERMISSIONS | PackageManager.GET_ACTIVITIES
+            | PackageManager.GET_SERVICES | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS;
+
+    public interface Listener {
+        void onSnapshotChanged(ScanSnapshot snapshot);
+
+        /**
+         * Called with partial results while the first scan is still running, before any snapshot
+         * exists. The final snapshot follows in {@link #onSnapshotChanged} and contains every app
+         * delivered here.
+         */
+        default void onScanBatch(List<AppSummary> batch) {
+        }
+    }
+
+    private static ScanRepository instance;
+
+    private final Context appContext;
+    private final SharedPreferences prefs;
+    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor();
+    private final AppAnalyzer analyzer = new AppAnalyzer();
+    private final ScanCache cache;
+    private final PermissionRegistry permissionRegistry;
+    private final TrackerDatabase trackerDatabase;
+    private final AppOpsReader appOpsReader;
+    private final RiskScorer riskScorer;
+    private final ScanHistory history;
+    private final UsageIndex usageIndex;
+    private final LruCache<String, AppInfo> detailCache = new LruCache<>(DETAIL_CACHE_SIZE);
+    // Details being loaded, by package; shared by prefetches and loadDetails callers
+    private final Map<String, FutureTask<AppInfo>> detailLoads = new HashMap<>();
+    private final ExecutorService detailExecutor = Executors.newFixedThreadPool(DETAIL_PREFETCH_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+    // Packages named by broadcasts since the last scan started; re-analyzed even if their fingerprint matches
+    private final Set<String> pendingPackageEvents = new HashSet<>();
+    private final Runnable packageEventScan = () -> startScan(false);
+    // Apps streamed so far by the first scan, replayed to listeners that register mid-scan
+    private final List<AppSummary> streamedApps = new ArrayList<>();
+    private final RiskRanking ranking = new RiskRanking();
+
+    private volatile ScanSnapshot snapshot;
+    private volatile AppOpsSnapshot appOps = AppOpsSnapshot.EMPTY;
+    // What the last scan found changed against the results before it
+    private ScanChanges lastChanges;
+    // Bumped by each deep scan toggle; scans that ran in different modes don't compare trackers
+    private volatile int trackerMode;
+    // The mode all of the last scan's trackers were found in, or -1 if it was toggled meanwhile.
+    // Scan thread only
+    private int lastScanTrackerMode;
+    private boolean scanInProgress;
+    private boolean rescanRequested;
+    private boolean fullRescanRequested;
+    // False while the snapshot only comes from the disk cache and may predate installs made while we were dead
+    private boolean verifiedSinceLaunch;
+
+    private ScanRepository(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.permissionRegistry = PermissionRegistry.getInstance(appContext);
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.trackerDatabase = TrackerDatabase.getInstance(appContext);
+        trackerDatabase.setDeepScan(prefs.getBoolean(PREF_DEEP_SCAN, false));
+        this.cache = new ScanCache(appContext, permissionRegistry, trackerDatabase);
+        this.appOpsReader = AppOpsReader.getInstance(appContext);
+        this.riskScorer = new RiskScorer(permissionRegistry, trackerDatabase);
+        riskScorer.setWeights(getRiskPreset().weights());
+        this.history = ScanHistory.getInstance(appContext);
+        this.usageIndex = UsageIndex.getInstance(appContext);
+        registerPackageReceiver();
+    }
+
+    public static synchronized ScanRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanRepository(context);
+        }
+        return instance;
+    }
+
+    /** Returns the latest snapshot, or null if no scan has finished yet. */
+    public ScanSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Permission and special-access usage of every app, refreshed with each scan by one
+     * device-wide AppOps query. Empty if this app may not read other apps' ops.
+     */
+    public AppOpsSnapshot getAppOps() {
+        return appOps;
+    }
+
+    /**
+     * What the most recent scan found changed since the results it replaced (the cached ones
+     * after a cold start), or null until a scan has had something to compare with. Updated
+     * before listeners are called.
+     */
+    public ScanChanges getLastChanges() {
+        return lastChanges;
+    }
+
+    /**
+     * Apps of the current snapshot, or streamed so far by the first scan, ordered by risk.
+     * Updated from each snapshot's delta before listeners are called; read-only for screens.
+     */
+    public RiskRanking getRanking() {
+        return ranking;
+    }
+
+    public boolean isScanning() {
+        return scanInProgress;
+    }
+
+    /**
+     * Registers a listener and immediately delivers the current snapshot, or the apps streamed
+     * so far if the first scan is still running.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        if (snapshot != null) {
+            listener.onSnapshotChanged(snapshot);
+        } else if (!streamedApps.isEmpty()) {
+            listener.onScanBatch(new ArrayList<>(streamedApps));
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the full analysis of one app, reusing the cached one if the app has not changed
+     * since it was built, or joining a load already started by {@link #prefetchDetails}.
+     * A miss costs a PackageManager lookup, so call this off the main thread.
+     *
+     * @throws CancellationException if the calling thread is interrupted while waiting; its
+     *         interrupt flag is set again
+     */
+    public AppInfo loadDetails(String packageName) throws PackageManager.NameNotFoundException {
+        AppInfo cached = cachedDetails(packageName);
+        if (cached != null) return cached;
+
+        // Runs the load here unless a prefetch thread already started it, then waits for it
+        FutureTask<AppInfo> load = detailLoadFor(packageName);
+        load.run();
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PackageManager.NameNotFoundException) {
+                throw (PackageManager.NameNotFoundException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted loading " + packageName);
+        }
+    }
+
+    /**
+     * Starts loading an app's details in the background so its detail screen opens without
+     * waiting, e.g. when its row is pressed or settles on screen. Does nothing if they are
+     * cached or already loading. May be called from any thread.
+     */
+    public void prefetchDetails(String packageName) {
+        if (cachedDetails(packageName) != null) return;
+        FutureTask<AppInfo> load = detailLoadFor(packageName);
+        if (!load.isDone()) {
+            detailExecutor.execute(load);
+        }
+    }
+
+    private AppInfo cachedDetails(String packageName) {
+        AppInfo cached = detailCache.get(packageName);
+        ScanSnapshot current = snapshot;
+        AppSummary summary = current == null ? null : current.findApp(packageName);
+        return cached != null && summary != null && summary.isSameBuild(cached) ? cached : null;
+    }
+
+    // The pending load of an app's details, created if there is none
+    private FutureTask<AppInfo> detailLoadFor(String packageName) {
+        synchronized (detailLoads) {
+            FutureTask<AppInfo> load = detailLoads.get(packageName);
+            if (load == null) {
+                load = new FutureTask<>(() -> {
+                    try {
+                        AppInfo details = buildDetails(packageName);
+                        detailCache.put(packageName, details);
+                        return details;
+                    } finally {
+                        synchronized (detailLoads) {
+                            detailLoads.remove(packageName);
+                        }
+                    }
+                });
+                detailLoads.put(packageName, load);
+            }
+            return load;
+        }
+    }
+
+    private AppInfo buildDetails(String packageName) throws PackageManager.NameNotFoundException {
+        PackageManager pm = appContext.getPackageManager();
+        ScanSnapshot current = snapshot;
+        AppSummary summary = current == null ? null : current.findApp(packageName);
+        if (summary != null) {
+            // The scan already matched this build's components against the trackers, so only
+            // permissions are needed; that listing is far smaller than one with every component
+            PackageInfo packageInfo = pm.getPackageInfo(packageName, PackageManager.GET_PERMISSIONS);
+            if (summary.isSameBuild(packageInfo)) {
+                return new AppInfo(packageInfo, pm, permissionRegistry, trackerDatabase, summary.getTrackerBits(),
+                        riskScorer, summary.getLastUsed());
+            }
+        }
+        PackageInfo packageInfo = pm.getPackageInfo(packageName, SCAN_FLAGS);
+        return new AppInfo(packageInfo, pm, permissionRegistry, trackerDatabase, trackerDatabase.detect(packageInfo),
+                riskScorer, summary == null ? 0 : summary.getLastUsed());
+    }
+
+    public boolean isDeepScan() {
+        return trackerDatabase.isDeepScan();
+    }
+
+    /**
+     * Turns the dex-level tracker scan on or off, remembers the choice, and re-analyzes every
+     * app so all results come from the same mode.
+     */
+    public void setDeepScan(boolean enabled) {
+        if (enabled == trackerDatabase.isDeepScan()) return;
+        prefs.edit().putBoolean(PREF_DEEP_SCAN, enabled).apply();
+        trackerDatabase.setDeepScan(enabled);
+        trackerMode++;
+        detailCache.evictAll();
+        rescanAll();
+    }
+
+    public RiskScorer.Preset getRiskPreset() {
+        try {
+            return RiskScorer.Preset.valueOf(prefs.getString(PREF_RISK_PRESET, RiskScorer.Preset.BALANCED.name()));
+        } catch (IllegalArgumentException e) {
+            return RiskScorer.Preset.BALANCED;
+        }
+    }
+
+    /** Switches to a built-in weight set, remembers the choice, and re-scores the current snapshot. */
+    public void setRiskPreset(RiskScorer.Preset preset) {
+        if (preset == getRiskPreset()) return;
+        prefs.edit().putString(PREF_RISK_PRESET, preset.name()).apply();
+        setRiskWeights(preset.weights());
+    }
+
+    /**
+     * Replaces the risk weights and re-scores every app of the current snapshot in one pass.
+     * Apps whose score moved are published as the changed packages of a new snapshot version.
+     */
+    private void setRiskWeights(RiskScorer.Weights weights) {
+        riskScorer.setWeights(weights);
+        detailCache.evictAll();
+        if (scanInProgress) {
+            // The running scan may have scored with the old weights already
+            rescanRequested = true;
+            return;
+        }
+        final ScanSnapshot current = snapshot;
+        if (current == null) return;
+        scanInProgress = true;
+        final AppOpsSnapshot usage = appOps;
+        scanExecutor.execute(() -> {
+            // Outside the timing: an expired index is queried again
+            UsageIndex.Table lastUsed = usageIndex.get();
+            long start = SystemClock.elapsedRealtime();
+            ScanSnapshot unchanged = new ScanSnapshot(current.getVersion() + 1, current.getScannedAtMillis(),
+                    current.getAppsByName(), true, new HashSet<>(), new HashSet<>());
+            ScanSnapshot result = score(unchanged, lastUsed);
+            Log.d(TAG, "Re-scored " + result.size() + " apps, " + result.getChangedPackages().size() + " changed, in "
+                    + (SystemClock.elapsedRealtime() - start) + " ms");
+            cache.save(result);
+            // Index for search here so the first keystroke doesn't pay for it on the main thread
+            result.getSearchIndex();
+            // A re-score is not a scan, so the change feed stays as it was
+            mainHandler.post(() -> publish(result, usage, null));
+        });
+    }
+
+    /** Starts a scan only if there is no live snapshot yet or the current one is stale. */
+    public void ensureFresh() {
+        if (snapshot == null || !verifiedSinceLaunch || snapshot.isOlderThan(STALE_AFTER_MS)) {
+            rescan();
+        }
+    }
+
+    /** Re-analyzes only the packages that were installed, updated or removed since the last scan. */
+    public void rescan() {
+        startScan(false);
+    }
+
+    /**
+     * Re-analyzes every package. Needed to pick up changes that leave the package fingerprint
+     * untouched, such as the user revoking a permission in Settings.
+     */
+    public void rescanAll() {
+        startScan(true);
+    }
+
+    /**
+     * Runs {@code task} on the scan thread once the scans queued before it are done. Meant for
+     * reads of what scans record, such as {@link ScanHistory}: they run one at a time, finish in
+     * the order they were asked for and see the latest recorded scan.
+     */
+    public void runAfterScans(Runnable task) {
+        scanExecutor.execute(task);
+    }
+
+    private void startScan(boolean full) {
+        mainHandler.removeCallbacks(packageEventScan);
+        if (scanInProgress) {
+            // Whatever triggered this may have been missed by the running scan, so run again after it
+            rescanRequested = true;
+            fullRescanRequested |= full;
+            return;
+        }
+        scanInProgress = true;
+        final ScanSnapshot current = snapshot;
+        final Set<String> forcedPackages = new HashSet<>(pendingPackageEvents);
+        pendingPackageEvents.clear();
+        scanExecutor.execute(() -> {
+            int mode = trackerMode;
+            ScanSnapshot previous = current;
+            if (previous == null) {
+                previous = cache.load();
+                if (previous != null) {
+                    ScanSnapshot restored = previous;
+                    mainHandler.post(() -> publishRestored(restored));
+                }
+            }
+
+            ScanSnapshot scanned;
+            if (previous == null) {
+                scanned = scanInstalledApps(1, batch -> mainHandler.post(() -> deliverBatch(batch)));
+            } else if (full) {
+                scanned = scanInstalledApps(previous.getVersion() + 1, null);
+            } else {
+                scanned = scanChangedApps(previous, previous.getVersion() + 1, forcedPackages);
+            }
+            // Runs after analysis so every dangerous permission's op is in the registry
+            AppOpsSnapshot usage = appOpsReader.readAllPackages(permissionRegistry);
+            ScanSnapshot result = score(scanned, usageIndex.get());
+            cache.save(result);
+            // Recorded before publishing, so screens that read trends on the new snapshot include it
+            history.record(result);
+            // A cached snapshot is only loaded if it was written in the current mode
+            boolean sameMode = mode == trackerMode && (current == null || lastScanTrackerMode == mode);
+            lastScanTrackerMode = mode == trackerMode ? mode : -1;
+            ScanChanges changes = previous == null ? null
+                    : ScanChanges.between(previous, result, sameMode, permissionRegistry, trackerDatabase);
+            // Index for search here so the first keystroke doesn't pay for it on the main thread
+            result.getSearchIndex();
+            mainHandler.post(() -> publish(result, usage, changes));
+        });
+    }
+
+    // Shows the cached snapshot while the scan that verifies it keeps running
+    private void publishRestored(ScanSnapshot restored) {
+        snapshot = restored;
+        ranking.apply(restored);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSnapshotChanged(restored);
+        }
+    }
+
+    private void deliverBatch(List<AppSummary> batch) {
+        streamedApps.addAll(batch);
+        for (AppSummary app : batch) {
+            ranking.put(app);
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onScanBatch(batch);
+        }
+    }
+
+    // A null changes keeps the previous feed
+    private void publish(ScanSnapshot result, AppOpsSnapshot usage, ScanChanges changes) {
+        scanInProgress = false;
+        verifiedSinceLaunch = true;
+        snapshot = result;
+        appOps = usage;
+        if (changes != null) {
+            lastChanges = changes;
+        }
+        ranking.apply(result);
+        streamedApps.clear();
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSnapshotChanged(result);
+        }
+        if (rescanRequested) {
+            boolean full = fullRescanRequested;
+            rescanRequested = false;
+            fullRescanRequested = false;
+            startScan(full);
+        }
+    }
+
+    // Takes each app's last-used time from the usage index, then applies the current weights
+    // and that recency in one batch pass. Apps whose score or last-used time moved are added to
+    // the snapshot's changed packages. A null lastUsed (no usage access) clears the last-used times.
+    private ScanSnapshot score(ScanSnapshot scanned, UsageIndex.Table lastUsed) {
+        List<AppSummary> apps = scanned.getAppsByName();
+        List<AppSummary> withUsage = new ArrayList<>(apps.size());
+        for (AppSummary app : apps) {
+            long used = lastUsed == null ? 0 : lastUsed.getLastUsed(app.getPackageName());
+            withUsage.add(used == app.getLastUsed() ? app : app.withRiskScore(app.getRiskScore(), used));
+        }
+        int[] scores = riskScorer.scoreAll(withUsage);
+        List<AppSummary> scored = new ArrayList<>(apps.size());
+        Set<String> changed = new HashSet<>(scanned.getChangedPackages());
+        int rescored = 0;
+        for (int i = 0; i < scores.length; i++) {
+            AppSummary app = withUsage.get(i);
+            if (scores[i] != app.getRiskScore()) {
+                app = app.withRiskScore(scores[i], app.getLastUsed());
+            }
+            if (app != apps.get(i)) {
+                changed.add(app.getPackageName());
+                rescored++;
+            }
+            scored.add(app);
+        }
+        if (rescored == 0) return scanned;
+        return new ScanSnapshot(scanned.getVersion(), scanned.getScannedAtMillis(), scored, scanned.isIncremental(),
+                changed, new HashSet<>(scanned.getRemovedPackages()));
+    }
+
+    private ScanSnapshot scanInstalledApps(long version, AppAnalyzer.BatchSink sink) {
+        long start = SystemClock.elapsedRealtime();
+        PackageManager pm = appContext.getPackageManager();
+        // List without flags and fetch components per app in the workers: the full listing with
+        // every activity, service, receiver and provider of every app is huge
+        List<PackageInfo> packages = pm.getInstalledPackages(0);
+        List<String> userPackages = new ArrayList<>(packages.size());
+        for (PackageInfo packageInfo : packages) {
+            if (isUserApp(packageInfo)) {
+                userPackages.add(packageInfo.packageName);
+            }
+        }
+        List<AppSummary> apps = analyzer.analyzeAll(userPackages, this::analyze, sink);
+        Log.d(TAG, "Scanned " + apps.size() + " apps in " + (SystemClock.elapsedRealtime() - start) + " ms; trackers "
+                + trackerDatabase.takeThroughputSummary());
+        return new ScanSnapshot(version, System.currentTimeMillis(), apps);
+    }
+
+    private ScanSnapshot scanChangedApps(ScanSnapshot previous, long version, Set<String> forcedPackages) {
+        long start = SystemClock.elapsedRealtime();
+        PackageManager pm = appContext.getPackageManager();
+        // Without flags this listing carries only versionCode and lastUpdateTime, which is all we compare
+        List<PackageInfo> packages = pm.getInstalledPackages(0);
+
+        Map<String, AppSummary> previousApps = new HashMap<>(previous.size() * 2);
+        for (AppSummary app : previous.getAppsByName()) {
+            previousApps.put(app.getPackageName(), app);
+        }
+
+        List<AppSummary> apps = new ArrayList<>(packages.size());
+        List<String> toAnalyze = new ArrayList<>();
+        Set<String> removed = new HashSet<>();
+        for (PackageInfo listed : packages) {
+            if (!isUserApp(listed)) continue;
+            String packageName = listed.packageName;
+            AppSummary old = previousApps.remove(packageName);
+            if (old != null && old.isSameBuild(listed) && !forcedPackages.contains(packageName)) {
+                apps.add(old);
+            } else {
+                toAnalyze.add(packageName);
+                if (old != null) removed.add(packageName);
+            }
+        }
+        // Anything left in previousApps is no longer installed as a user app
+        removed.addAll(previousApps.keySet());
+
+        Set<String> changed = new HashSet<>();
+        List<AppSummary> analyzed = analyzer.analyzeAll(toAnalyze, this::analyze);
+        for (AppSummary app : analyzed) {
+            apps.add(app);
+            changed.add(app.getPackageName());
+            removed.remove(app.getPackageName());
+        }
+        // A package that was re-analyzed but vanished meanwhile stays in "removed"
+
+        Log.d(TAG, "Incremental scan re-analyzed " + changed.size() + " of " + apps.size()
+                + " apps, removed " + removed.size() + ", in " + (SystemClock.elapsedRealtime() - start) + " ms; trackers "
+                + trackerDatabase.takeThroughputSummary());
+        return new ScanSnapshot(version, System.currentTimeMillis(), apps, true, changed, removed);
+    }
+
+    // Runs on the analyzer's worker threads
+    private AppSummary analyze(String packageName) throws PackageManager.NameNotFoundException {
+        PackageManager pm = appContext.getPackageManager();
+        return new AppSummary(pm.getPackageInfo(packageName, SCAN_FLAGS), pm, permissionRegistry, trackerDatabase,
+                riskScorer);
+    }
+
+    private void registerPackageReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        appContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onPackageEvent(intent);
+            }
+        }, filter);
+    }
+
+    private void onPackageEvent(Intent intent) {
+        Uri data = intent.getData();
+        // Before the first scan starts there is nothing to correct. Once it runs it may already have
+        // listed the package, so the event is queued and the scan is followed by an incremental one
+        if (data == null || (snapshot == null && !scanInProgress)) return;
+        // An update sends REMOVED with EXTRA_REPLACING before REPLACED; only the latter matters
+        if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+            return;
+        }
+        String packageName = data.getSchemeSpecificPart();
+        pendingPackageEvents.add(packageName);
+        detailCache.remove(packageName);
+        mainHandler.removeCallbacks(packageEventScan);
+        mainHandler.postDelayed(packageEventScan, PACKAGE_EVENT_DELAY_MS);
+    }
+
+    static boolean isUserApp(PackageInfo packageInfo) {
+        return packageInfo.applicationInfo != null
+                && (packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0;
+    }
+}
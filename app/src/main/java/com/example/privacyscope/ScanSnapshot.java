@@ -0,0 +1,100 @@
+package com.example.privacyscope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable result of one scan of the user-installed apps.
+ * Every screen reads the same snapshot, so the lists it hands out are never modified.
+ * An incremental snapshot also records which packages changed since the previous version,
+ * so screens that already show that version can update just those rows.
+ */
+public final class ScanSnapshot {
+
+    public static final Comparator<AppSummary> BY_NAME = (a1, a2) -> a1.getAppName().compareToIgnoreCase(a2.getAppName());
+    public static final Comparator<AppSummary> BY_RISK = (a1, a2) -> Integer.compare(a2.getRiskScore(), a1.getRiskScore());
+
+    private final long version;
+    private final long scannedAtMillis;
+    private final List<AppSummary> appsByName;
+    // Sorted on first use; the dashboard reads ScanRepository's RiskRanking instead
+    private volatile List<AppSummary> appsByRisk;
+    // Built on first use; ScanRepository builds it on the scan thread before publishing
+    private volatile AppSearchIndex searchIndex;
+    private final Map<String, AppSummary> appsByPackage;
+    private final boolean incremental;
+    private final Set<String> changedPackages;
+    private final Set<String> removedPackages;
+
+    ScanSnapshot(long version, long scannedAtMillis, List<AppSummary> apps) {
+        this(version, scannedAtMillis, apps, false, Collections.emptySet(), Collections.emptySet());
+    }
+
+    ScanSnapshot(long version, long scannedAtMillis, List<AppSummary> apps, boolean incremental,
+                 Set<String> changedPackages, Set<String> removedPackages) {
+        this.version = version;
+        this.scannedAtMillis = scannedAtMillis;
+        this.incremental = incremental;
+        this.changedPackages = Collections.unmodifiableSet(changedPackages);
+        this.removedPackages = Collections.unmodifiableSet(removedPackages);
+
+        List<AppSummary> byName = new ArrayList<>(apps);
+        Collections.sort(byName, BY_NAME);
+        this.appsByName = Collections.unmodifiableList(byName);
+
+        Map<String, AppSummary> byPackage = new HashMap<>(apps.size() * 2);
+        for (AppSummary app : apps) {
+            byPackage.put(app.getPackageName(), app);
+        }
+        this.appsByPackage = Collections.unmodifiableMap(byPackage);
+    }
+
+    public long getVersion() { return version; }
+    public long getScannedAtMillis() { return scannedAtMillis; }
+    public List<AppSummary> getAppsByName() { return appsByName; }
+    public List<AppSummary> getAppsByRisk() {
+        List<AppSummary> result = appsByRisk;
+        if (result == null) {
+            // Racing threads sort the same data; whichever result lands is equivalent
+            List<AppSummary> byRisk = new ArrayList<>(appsByName);
+            Collections.sort(byRisk, BY_RISK);
+            result = Collections.unmodifiableList(byRisk);
+            appsByRisk = result;
+        }
+        return result;
+    }
+    /** Type-ahead search over this snapshot's apps. */
+    public AppSearchIndex getSearchIndex() {
+        AppSearchIndex result = searchIndex;
+        if (result == null) {
+            result = new AppSearchIndex(appsByName);
+            searchIndex = result;
+        }
+        return result;
+    }
+
+    public int size() { return appsByName.size(); }
+
+    // --- Delta against version - 1, only meaningful when isIncremental() ---
+    public boolean isIncremental() { return incremental; }
+    public Set<String> getChangedPackages() { return changedPackages; }
+    public Set<String> getRemovedPackages() { return removedPackages; }
+
+    /** True if a screen showing {@code shownVersion} can apply this snapshot's delta instead of reloading. */
+    public boolean canApplyDeltaTo(long shownVersion) {
+        return incremental && shownVersion == version - 1;
+    }
+
+    public AppSummary findApp(String packageName) {
+        return appsByPackage.get(packageName);
+    }
+
+    public boolean isOlderThan(long maxAgeMillis) {
+        return System.currentTimeMillis() - scannedAtMillis > maxAgeMillis;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ComponentInfo;
+import android.content.pm.PackageInfo;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracker SDK signatures from {@code assets/tracker_signatures.txt}, compiled into a prefix trie
+ * over class names. {@link #detect} walks every activity, service, receiver and provider name
+ * of an app once and collects each SDK whose prefix lies on the path, so the cost grows with
+ * the length of the names, not with the number of signatures.
+ * With deep scan on, the app's dex files are also searched for the same prefixes by
+ * {@link DexScanner}, which finds SDKs that register no components.
+ * A tracker's id is the order of its line in the file. The file is read on first use.
+ * Safe to use from any thread.
+ */
+public final class TrackerDatabase {
+
+    private static final String TAG = "PrivacyScope";
+    private static final String ASSET_NAME = "tracker_signatures.txt";
+    public static final String CATEGORY_ADVERTISEMENT = "Advertisement";
+
+    private static TrackerDatabase instance;
+
+    private final Context appContext;
+    private volatile Trie trie;
+    private String[] names;
+    private String[] categories;
+    private Map<String, Integer> idsByName;
+    private String[] signaturePrefixes;
+    private int[] signatureTrackers;
+    private final DexScanner dexScanner = new DexScanner(this);
+    private volatile boolean deepScan;
+
+    // Throughput of detect(), for the scan log
+    private final AtomicLong examinedComponents = new AtomicLong();
+    private final AtomicLong matchNanos = new AtomicLong();
+
+    private TrackerDatabase(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    public static synchronized TrackerDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new TrackerDatabase(context);
+        }
+        return instance;
+    }
+
+    // --- Lookups by id ---
+
+    public int size() {
+        ensureLoaded();
+        return names.length;
+    }
+
+    public String getName(int trackerId) {
+        ensureLoaded();
+        return names[trackerId];
+    }
+
+    public String getCategory(int trackerId) {
+        ensureLoaded();
+        return categories[trackerId];
+    }
+
+    /** Returns the id of the tracker with this name, or -1. */
+    public int findId(String trackerName) {
+        ensureLoaded();
+        Integer id = idsByName.get(trackerName);
+        return id == null ? -1 : id;
+    }
+
+    /** Display names for a tracker bitset, sorted alphabetically. */
+    public List<String> namesOf(long[] trackerBits) {
+        ensureLoaded();
+        List<String> result = new ArrayList<>(Bits.count(trackerBits));
+        for (int id = Bits.nextSetBit(trackerBits, 0); id >= 0; id = Bits.nextSetBit(trackerBits, id + 1)) {
+            result.add(names[id]);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    // --- Signatures, for DexScanner ---
+
+    int getSignatureCount() {
+        ensureLoaded();
+        return signaturePrefixes.length;
+    }
+
+    String getSignaturePrefix(int index) {
+        return signaturePrefixes[index];
+    }
+
+    int getSignatureTracker(int index) {
+        return signatureTrackers[index];
+    }
+
+    // --- Detection ---
+
+    /** Also search each app's dex files in {@link #detect}; slower, so off by default. */
+    public void setDeepScan(boolean enabled) {
+        deepScan = enabled;
+    }
+
+    public boolean isDeepScan() {
+        return deepScan;
+    }
+
+    /** Matches every component of {@code packageInfo} (needs the component flags) against the signatures. */
+    public long[] detect(PackageInfo packageInfo) {
+        Trie trie = ensureLoaded();
+        long start = System.nanoTime();
+        Bits.Builder found = new Bits.Builder();
+        int components = trie.matchAll(packageInfo.activities, found)
+                + trie.matchAll(packageInfo.services, found)
+                + trie.matchAll(packageInfo.receivers, found)
+                + trie.matchAll(packageInfo.providers, found);
+        examinedComponents.addAndGet(components);
+        matchNanos.addAndGet(System.nanoTime() - start);
+
+        ApplicationInfo app = packageInfo.applicationInfo;
+        if (deepScan && app != null && app.sourceDir != null) {
+            dexScanner.scan(app.sourceDir, found);
+            if (app.splitSourceDirs != null) {
+                for (String split : app.splitSourceDirs) {
+                    dexScanner.scan(split, found);
+                }
+            }
+        }
+        return found.build();
+    }
+
+    /** Returns a one-line summary of matching throughput since the last call, and resets it. */
+    String takeThroughputSummary() {
+        long components = examinedComponents.getAndSet(0);
+        long nanos = matchNanos.getAndSet(0);
+        long perSecond = nanos == 0 ? 0 : components * 1_000_000_000L / nanos;
+        String summary = String.format(Locale.US, "examined %d component names in %.1f ms (%d names/s)",
+                components, nanos / 1e6, perSecond);
+        return deepScan ? summary + "; " + dexScanner.takeTimingSummary() : summary;
+    }
+
+    // --- Loading ---
+
+    private Trie ensureLoaded() {
+        Trie loaded = trie;
+        if (loaded != null) return loaded;
+        synchronized (this) {
+            if (trie == null) {
+                load();
+            }
+            return trie;
+        }
+    }
+
+    // Line format: name|category|prefix[,prefix...]; '#' starts a comment
+    private void load() {
+        long start = SystemClock.elapsedRealtime();
+        List<String> nameList = new ArrayList<>();
+        List<String> categoryList = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> prefixes = new ArrayList<>();
+        List<Integer> prefixTrackers = new ArrayList<>();
+        Trie built = new Trie();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                appContext.getAssets().open(ASSET_NAME), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\|");
+                if (fields.length != 3) {
+                    Log.w(TAG, "Skipping malformed tracker signature: " + line);
+                    continue;
+                }
+                int id = nameList.size();
+                nameList.add(fields[0]);
+                categoryList.add(fields[1]);
+                ids.put(fields[0], id);
+                for (String prefix : fields[2].split(",")) {
+                    built.insert(prefix.trim(), id);
+                    prefixes.add(prefix.trim());
+                    prefixTrackers.add(id);
+                }
+            }
+        } catch (IOException e) {
+            // Without the database no trackers are reported, but scanning still works
+            Log.e(TAG, "Failed to load tracker signatures", e);
+        }
+        names = nameList.toArray(new String[0]);
+        categories = categoryList.toArray(new String[0]);
+        idsByName = ids;
+        signaturePrefixes = prefixes.toArray(new String[0]);
+        signatureTrackers = new int[prefixTrackers.size()];
+        for (int i = 0; i < signatureTrackers.length; i++) {
+            signatureTrackers[i] = prefixTrackers.get(i);
+        }
+        trie = built;
+        Log.d(TAG, "Loaded " + names.length + " tracker SDKs (" + signaturePrefixes.length + " signatures, "
+                + built.size + " trie nodes) in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Character trie in parallel arrays; children of a node form a linked list of siblings.
+     * Class names share long package prefixes, so most nodes have a single child.
+     */
+    private static final class Trie {
+        private char[] labels = new char[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private int[] trackerIds = new int[1024];
+        private int size;
+
+        Trie() {
+            newNode('\0');
+        }
+
+        void insert(String prefix, int trackerId) {
+            int node = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                char c = prefix.charAt(i);
+                int child = child(node, c);
+                if (child < 0) {
+                    child = newNode(c);
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            if (trackerIds[node] < 0) {
+                trackerIds[node] = trackerId;
+            }
+        }
+
+        // Returns the number of component names examined
+        int matchAll(ComponentInfo[] components, Bits.Builder found) {
+            if (components == null) return 0;
+            for (ComponentInfo component : components) {
+                if (component.name != null) {
+                    match(component.name, found);
+                }
+            }
+            return components.length;
+        }
+
+        private void match(String className, Bits.Builder found) {
+            int node = 0;
+            for (int i = 0; i < className.length(); i++) {
+                node = child(node, className.charAt(i));
+                if (node < 0) return;
+                if (trackerIds[node] >= 0) found.add(trackerIds[node]);
+            }
+        }
+
+        private int child(int node, char c) {
+            for (int n = firstChild[node]; n >= 0; n = nextSibling[n]) {
+                if (labels[n] == c) return n;
+            }
+            return -1;
+        }
+
+        private int newNode(char label) {
+            if (size == labels.length) {
+                int capacity = size * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                trackerIds = Arrays.copyOf(trackerIds, capacity);
+            }
+            labels[size] = label;
+            firstChild[size] = -1;
+            nextSibling[size] = -1;
+            trackerIds[size] = -1;
+            return size++;
+        }
+    }
+}
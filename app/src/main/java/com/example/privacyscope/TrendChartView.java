@@ -0,0 +1,97 @@
+package com.example.privacyscope;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * A small step chart of one value over time, for {@link ScanHistory} trends. Each point holds
+ * until the next one, and the last one holds until the end of the range. A NaN value leaves a
+ * gap, e.g. while an app was uninstalled.
+ */
+public class TrendChartView extends View {
+
+    private long[] times = new long[0];
+    private float[] values = new float[0];
+    private long startTime;
+    private long endTime;
+    private float maxValue = 100;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint fillPaint = new Paint();
+    private final Paint axisPaint = new Paint();
+    private final Path line = new Path();
+
+    public TrendChartView(Context context) {
+        this(context, null);
+    }
+
+    public TrendChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(2 * density);
+        axisPaint.setStrokeWidth(density);
+        axisPaint.setColor(ContextCompat.getColor(context, R.color.textColorSecondary));
+        setLineColor(ContextCompat.getColor(context, R.color.primaryColor));
+    }
+
+    public void setLineColor(int color) {
+        linePaint.setColor(color);
+        fillPaint.setColor(Color.argb(48, Color.red(color), Color.green(color), Color.blue(color)));
+        invalidate();
+    }
+
+    /** Shows {@code values} at {@code times} (ascending) over the range, scaled so maxValue is the top. */
+    public void setSeries(long[] times, float[] values, long startTime, long endTime, float maxValue) {
+        this.times = times;
+        this.values = values;
+        this.startTime = startTime;
+        this.endTime = Math.max(endTime, startTime + 1);
+        this.maxValue = maxValue > 0 ? maxValue : 1;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float left = getPaddingLeft();
+        float right = getWidth() - getPaddingRight();
+        float top = getPaddingTop() + linePaint.getStrokeWidth();
+        float bottom = getHeight() - getPaddingBottom();
+        canvas.drawLine(left, bottom, right, bottom, axisPaint);
+        if (times.length == 0 || right <= left) return;
+
+        line.rewind();
+        boolean drawing = false;
+        for (int i = 0; i < times.length; i++) {
+            float x = xOf(Math.max(times[i], startTime), left, right);
+            float nextX = i + 1 < times.length ? xOf(times[i + 1], left, right) : right;
+            if (Float.isNaN(values[i]) || nextX <= left) {
+                drawing = false;
+                continue;
+            }
+            float y = bottom - Math.min(values[i] / maxValue, 1f) * (bottom - top);
+            canvas.drawRect(x, y, nextX, bottom, fillPaint);
+            if (drawing) {
+                line.lineTo(x, y);
+            } else {
+                line.moveTo(x, y);
+                drawing = true;
+            }
+            line.lineTo(nextX, y);
+        }
+        canvas.drawPath(line, linePaint);
+    }
+
+    private float xOf(long time, float left, float right) {
+        return left + (right - left) * (time - startTime) / (float) (endTime - startTime);
+    }
+}
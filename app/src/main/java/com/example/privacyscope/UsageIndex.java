@@ -0,0 +1,132 @@
+package com.example.privacyscope;
+
+import android.app.AppOpsManager;
+import android.app.usage.UsageStats;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last-used time and total foreground time of every package over the past 30 days, aggregated
+ * from one queryUsageStats call. The index is shared by every screen and rebuilt only once it
+ * is older than {@link #TTL_MS}, so opening many detail screens costs a single query.
+ * Safe to use from any thread; {@link #get} may query and belongs off the main thread.
+ */
+public final class UsageIndex {
+
+    private static final String TAG = "PrivacyScope";
+    private static final long WINDOW_MS = TimeUnit.DAYS.toMillis(30);
+    static final long TTL_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static UsageIndex instance;
+
+    private final Context appContext;
+    private volatile Table table;
+
+    /** Immutable aggregate of one query. */
+    public static final class Table {
+        private final long builtAtElapsed;
+        private final Map<String, Integer> rows;
+        private final long[] lastUsed;
+        private final long[] foregroundMs;
+
+        private Table(long builtAtElapsed, Map<String, Integer> rows, long[] lastUsed, long[] foregroundMs) {
+            this.builtAtElapsed = builtAtElapsed;
+            this.rows = rows;
+            this.lastUsed = lastUsed;
+            this.foregroundMs = foregroundMs;
+        }
+
+        /** Last time the app was in the foreground, or 0 if not in the past 30 days. */
+        public long getLastUsed(String packageName) {
+            Integer row = rows.get(packageName);
+            return row == null ? 0 : lastUsed[row];
+        }
+
+        /** Total foreground time over the past 30 days, in milliseconds. */
+        public long getForegroundTime(String packageName) {
+            Integer row = rows.get(packageName);
+            return row == null ? 0 : foregroundMs[row];
+        }
+
+        boolean isFresh() {
+            return SystemClock.elapsedRealtime() - builtAtElapsed < TTL_MS;
+        }
+    }
+
+    private UsageIndex(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    public static synchronized UsageIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new UsageIndex(context);
+        }
+        return instance;
+    }
+
+    public boolean hasPermission() {
+        AppOpsManager appOps = (AppOpsManager) appContext.getSystemService(Context.APP_OPS_SERVICE);
+        int mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS, Process.myUid(), appContext.getPackageName());
+        return mode == AppOpsManager.MODE_ALLOWED;
+    }
+
+    /** The current index if it is still within its TTL, else null. Never queries. */
+    public Table peek() {
+        Table current = table;
+        return current != null && current.isFresh() ? current : null;
+    }
+
+    /** The current index, rebuilding it first if it expired. Returns null without usage access. */
+    public Table get() {
+        Table current = peek();
+        if (current != null) return current;
+        synchronized (this) {
+            // Another thread may have rebuilt it while we waited
+            current = peek();
+            if (current == null && hasPermission()) {
+                current = build();
+                table = current;
+            }
+            return current;
+        }
+    }
+
+    /** Drops the index so the next {@link #get} queries again, e.g. after usage access was granted. */
+    public void invalidate() {
+        table = null;
+    }
+
+    private Table build() {
+        long start = SystemClock.elapsedRealtime();
+        UsageStatsManager usm = (UsageStatsManager) appContext.getSystemService(Context.USAGE_STATS_SERVICE);
+        long now = System.currentTimeMillis();
+        List<UsageStats> stats = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, now - WINDOW_MS, now);
+
+        // Daily buckets repeat each package once per day; fold them into one row per package
+        Map<String, Integer> rows = new HashMap<>();
+        int count = stats == null ? 0 : stats.size();
+        long[] lastUsed = new long[count];
+        long[] foregroundMs = new long[count];
+        for (int i = 0; i < count; i++) {
+            UsageStats usage = stats.get(i);
+            Integer row = rows.get(usage.getPackageName());
+            if (row == null) {
+                row = rows.size();
+                rows.put(usage.getPackageName(), row);
+            }
+            lastUsed[row] = Math.max(lastUsed[row], usage.getLastTimeUsed());
+            foregroundMs[row] += usage.getTotalTimeInForeground();
+        }
+        Log.d(TAG, "Indexed usage of " + rows.size() + " packages from " + count + " rows in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+        return new Table(SystemClock.elapsedRealtime(), rows, lastUsed, foregroundMs);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.privacyscope;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.example.privacyscope.TestApps.app;
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link RiskRanking} against a plain sort of the same apps.
+ */
+public class RiskRankingTest {
+
+    private RiskRanking ranking;
+    // What the ranking should contain, by package
+    private Map<String, AppSummary> expected;
+
+    @Before
+    public void setUp() {
+        ranking = new RiskRanking();
+        expected = new HashMap<>();
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(0, ranking.size());
+        assertTrue(ranking.top(5).isEmpty());
+        assertEquals(0, ranking.rankOf("com.missing"));
+        assertEquals(0, ranking.countOf(AppInfo.RiskLevel.LOW));
+    }
+
+    @Test
+    public void insert() {
+        put(app("com.a", "Alpha", 70));
+        put(app("com.b", "Bravo", 20));
+        put(app("com.c", "Charlie", 45));
+        put(app("com.d", "Delta", 70));
+        assertMatchesSort();
+
+        assertEquals(1, ranking.rankOf("com.a"));
+        assertEquals(1, ranking.rankOf("com.d"));
+        assertEquals(3, ranking.rankOf("com.c"));
+        assertEquals(4, ranking.rankOf("com.b"));
+        assertEquals(2, ranking.countOf(AppInfo.RiskLevel.HIGH));
+        assertEquals(1, ranking.countOf(AppInfo.RiskLevel.MEDIUM));
+        assertEquals(1, ranking.countOf(AppInfo.RiskLevel.LOW));
+    }
+
+    @Test
+    public void update() {
+        put(app("com.a", "Alpha", 70));
+        put(app("com.b", "Bravo", 20));
+        put(app("com.a", "Alpha", 10));
+        assertMatchesSort();
+
+        assertEquals(2, ranking.size());
+        assertEquals(2, ranking.rankOf("com.a"));
+        assertEquals(0, ranking.countOf(AppInfo.RiskLevel.HIGH));
+        assertEquals(2, ranking.countOf(AppInfo.RiskLevel.LOW));
+    }
+
+    @Test
+    public void remove() {
+        put(app("com.a", "Alpha", 70));
+        put(app("com.b", "Bravo", 20));
+        remove("com.a");
+        remove("com.missing");
+        assertMatchesSort();
+
+        assertEquals(0, ranking.rankOf("com.a"));
+        assertEquals(1, ranking.rankOf("com.b"));
+    }
+
+    @Test
+    public void topStopsAtK() {
+        put(app("com.a", "Alpha", 70));
+        put(app("com.b", "Bravo", 70));
+        put(app("com.c", "Charlie", 50));
+
+        List<AppSummary> top = ranking.top(2);
+        assertEquals(2, top.size());
+        assertEquals("com.a", top.get(0).getPackageName());
+        assertEquals("com.b", top.get(1).getPackageName());
+        assertEquals(3, ranking.top(10).size());
+    }
+
+    @Test
+    public void scoresOutsideRangeAreClamped() {
+        put(app("com.a", "Alpha", 150));
+        put(app("com.b", "Bravo", -5));
+        assertMatchesSort();
+
+        assertEquals(1, ranking.rankOf("com.a"));
+        assertEquals(2, ranking.rankOf("com.b"));
+    }
+
+    @Test
+    public void randomUpdatesMatchSort() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String packageName = "com.app" + random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                remove(packageName);
+            } else {
+                // Few distinct names so the name order within a score gets exercised too
+                put(app(packageName, "App " + random.nextInt(10), random.nextInt(101)));
+            }
+            if (i % 100 == 0) assertMatchesSort();
+        }
+        assertMatchesSort();
+    }
+
+    private void put(AppSummary app) {
+        ranking.put(app);
+        expected.put(app.getPackageName(), app);
+    }
+
+    private void remove(String packageName) {
+        ranking.remove(packageName);
+        expected.remove(packageName);
+    }
+
+    private void assertMatchesSort() {
+        List<AppSummary> sorted = new ArrayList<>(expected.values());
+        Collections.sort(sorted, (a1, a2) -> {
+            int byScore = Integer.compare(clamp(a2.getRiskScore()), clamp(a1.getRiskScore()));
+            if (byScore != 0) return byScore;
+            int byName = a1.getAppName().compareToIgnoreCase(a2.getAppName());
+            return byName != 0 ? byName : a1.getPackageName().compareTo(a2.getPackageName());
+        });
+
+        assertEquals(sorted.size(), ranking.size());
+        assertEquals(sorted, ranking.top(sorted.size()));
+        for (int k = 0; k <= sorted.size(); k += 7) {
+            assertEquals(sorted.subList(0, k), ranking.top(k));
+        }
+
+        int high = 0, medium = 0;
+        for (AppSummary app : sorted) {
+            int score = clamp(app.getRiskScore());
+            if (score >= RiskScorer.HIGH_THRESHOLD) high++;
+            else if (score >= RiskScorer.MEDIUM_THRESHOLD) medium++;
+
+            int rank = 1;
+            for (AppSummary other : sorted) {
+                if (clamp(other.getRiskScore()) > score) rank++;
+            }
+            assertEquals(app.getPackageName(), rank, ranking.rankOf(app.getPackageName()));
+        }
+        assertEquals(high, ranking.countOf(AppInfo.RiskLevel.HIGH));
+        assertEquals(medium, ranking.countOf(AppInfo.RiskLevel.MEDIUM));
+        assertEquals(sorted.size() - high - medium, ranking.countOf(AppInfo.RiskLevel.LOW));
+    }
+
+    private static int clamp(int score) {
+        return Math.max(0, Math.min(score, 100));
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.privacyscope;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.example.privacyscope.TestApps.app;
+import static com.example.privacyscope.TestApps.bits;
+import static com.example.privacyscope.TestApps.snapshot;
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link ScanChanges} on hand-built snapshots, with permission and tracker names
+ * taken straight from their ids.
+ */
+public class ScanChangesTest {
+
+    private static final ScanChanges.Names NAMES = new ScanChanges.Names() {
+        @Override
+        public String permission(int id) {
+            return "P" + id;
+        }
+
+        @Override
+        public List<String> trackers(long[] bits) {
+            List<String> names = new ArrayList<>();
+            for (int id = Bits.nextSetBit(bits, 0); id >= 0; id = Bits.nextSetBit(bits, id + 1)) {
+                names.add("T" + id);
+            }
+            return names;
+        }
+    };
+
+    private static final long[] NONE = Bits.EMPTY;
+    // Scores at each level
+    private static final int LOW = 10;
+    private static final int MEDIUM = 40;
+    private static final int HIGH = 80;
+
+    @Test
+    public void installedAndRemoved() {
+        ScanSnapshot previous = snapshot(1, 1000, app("com.a", "Alpha", LOW, bits(1), bits(1), NONE));
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.b", "Bravo", HIGH, bits(1, 2, 3), bits(1, 2), bits(0)));
+
+        ScanChanges changes = ScanChanges.between(previous, current, true, NAMES);
+        assertEquals(1000, changes.getPreviousScanAtMillis());
+        assertEquals(2000, changes.getScannedAtMillis());
+        assertEquals(2, changes.getChanges().size());
+
+        ScanChanges.AppChange removed = changes.getChanges().get(0);
+        assertEquals(ScanChanges.Kind.REMOVED, removed.getKind());
+        assertEquals("com.a", removed.getPackageName());
+        assertEquals(AppInfo.RiskLevel.LOW, removed.getOldLevel());
+        assertNull(removed.getNewLevel());
+        assertEquals("Removed", removed.getDescription());
+
+        ScanChanges.AppChange installed = changes.getChanges().get(1);
+        assertEquals(ScanChanges.Kind.INSTALLED, installed.getKind());
+        assertEquals("com.b", installed.getPackageName());
+        assertNull(installed.getOldLevel());
+        assertEquals(AppInfo.RiskLevel.HIGH, installed.getNewLevel());
+        assertEquals("Installed · Risk HIGH · 2 granted permissions · 1 trackers", installed.getDescription());
+    }
+
+    @Test
+    public void newlyRequestedAndNewlyGrantedAreListedApart() {
+        ScanSnapshot previous = snapshot(1, 1000,
+                app("com.a", "Alpha", MEDIUM, bits(1, 4), bits(1), NONE));
+        // 4 was requested before and is now granted; 3 is new and granted; 2 is new and not granted
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.a", "Alpha", MEDIUM, bits(1, 2, 3, 4), bits(1, 3, 4), NONE));
+
+        ScanChanges.AppChange change = single(ScanChanges.between(previous, current, true, NAMES));
+        assertEquals(ScanChanges.Kind.CHANGED, change.getKind());
+        assertEquals("Newly granted: P3, P4 · Now requests: P2", change.getDescription());
+    }
+
+    @Test
+    public void newTrackers() {
+        ScanSnapshot previous = snapshot(1, 1000,
+                app("com.a", "Alpha", LOW, NONE, NONE, bits(0, 1)));
+        // Dropping tracker 1 isn't reported; 2 and 70 are new
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.a", "Alpha", LOW, NONE, NONE, bits(0, 2, 70)));
+
+        assertEquals("New trackers: T2, T70", single(ScanChanges.between(previous, current, true, NAMES)).getDescription());
+    }
+
+    @Test
+    public void levelChange() {
+        ScanSnapshot previous = snapshot(1, 1000,
+                app("com.a", "Alpha", MEDIUM, bits(1), bits(1), NONE));
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.a", "Alpha", HIGH, bits(1, 2), bits(1, 2), bits(3)));
+
+        ScanChanges.AppChange change = single(ScanChanges.between(previous, current, true, NAMES));
+        assertEquals(AppInfo.RiskLevel.MEDIUM, change.getOldLevel());
+        assertEquals(AppInfo.RiskLevel.HIGH, change.getNewLevel());
+        assertEquals("Risk MEDIUM → HIGH · Newly granted: P2 · New trackers: T3", change.getDescription());
+    }
+
+    @Test
+    public void unchangedAppsAreSkipped() {
+        AppSummary same = app("com.a", "Alpha", HIGH, bits(1), bits(1), bits(0));
+        ScanSnapshot previous = snapshot(1, 1000, same,
+                app("com.b", "Bravo", LOW, bits(1, 2), bits(1, 2), bits(0)));
+        // A re-scored copy with the same level and fewer grants and trackers
+        ScanSnapshot current = snapshot(2, 2000, same,
+                app("com.b", "Bravo", LOW, bits(1, 2), bits(1), NONE));
+
+        assertTrue(ScanChanges.between(previous, current, true, NAMES).isEmpty());
+    }
+
+    @Test
+    public void deltaMatchesFullComparison() {
+        AppSummary alpha = app("com.a", "Alpha", LOW, bits(1), bits(1), NONE);
+        ScanSnapshot previous = snapshot(5, 1000, alpha,
+                app("com.b", "Bravo", MEDIUM, bits(1), bits(1), NONE),
+                app("com.c", "Charlie", LOW, NONE, NONE, NONE));
+        List<AppSummary> apps = Arrays.asList(alpha,
+                app("com.b", "Bravo", HIGH, bits(1), bits(1), bits(4)),
+                app("com.d", "Delta", LOW, NONE, NONE, NONE));
+        ScanSnapshot delta = new ScanSnapshot(6, 2000, apps, true,
+                new HashSet<>(Arrays.asList("com.b", "com.d")), Collections.singleton("com.c"));
+        ScanSnapshot full = new ScanSnapshot(6, 2000, apps);
+        assertTrue(delta.canApplyDeltaTo(previous.getVersion()));
+
+        List<ScanChanges.AppChange> fromDelta = ScanChanges.between(previous, delta, true, NAMES).getChanges();
+        List<ScanChanges.AppChange> fromFull = ScanChanges.between(previous, full, true, NAMES).getChanges();
+        assertEquals(3, fromDelta.size());
+        assertEquals(fromFull.size(), fromDelta.size());
+        for (int i = 0; i < fromFull.size(); i++) {
+            assertEquals(fromFull.get(i).getPackageName(), fromDelta.get(i).getPackageName());
+            assertEquals(fromFull.get(i).getKind(), fromDelta.get(i).getKind());
+            assertEquals(fromFull.get(i).getDescription(), fromDelta.get(i).getDescription());
+        }
+        assertEquals("Risk MEDIUM → HIGH · New trackers: T4", fromDelta.get(0).getDescription());
+        assertEquals(ScanChanges.Kind.REMOVED, fromDelta.get(1).getKind());
+        assertEquals(ScanChanges.Kind.INSTALLED, fromDelta.get(2).getKind());
+    }
+
+    @Test
+    public void deltaOnlyVisitsItsChangedPackages() {
+        ScanSnapshot previous = snapshot(5, 1000,
+                app("com.a", "Alpha", LOW, bits(1), bits(1), NONE));
+        // com.a differs, but the delta doesn't list it, so it isn't compared
+        ScanSnapshot delta = new ScanSnapshot(6, 2000,
+                Collections.singletonList(app("com.a", "Alpha", HIGH, bits(1, 2), bits(1, 2), NONE)),
+                true, Collections.emptySet(), Collections.emptySet());
+
+        assertTrue(ScanChanges.between(previous, delta, true, NAMES).isEmpty());
+        // A delta against some other version falls back to comparing everything
+        ScanSnapshot stale = snapshot(3, 500, app("com.a", "Alpha", LOW, bits(1), bits(1), NONE));
+        assertEquals("Risk LOW → HIGH · Newly granted: P2",
+                single(ScanChanges.between(stale, delta, true, NAMES)).getDescription());
+    }
+
+    @Test
+    public void levelChangeAloneIsNotReported() {
+        // Same permissions, grants and trackers: new weights or recency moved the level, not the app
+        ScanSnapshot previous = snapshot(1, 1000,
+                app("com.a", "Alpha", MEDIUM, bits(1), bits(1), bits(0)));
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.a", "Alpha", HIGH, bits(1), bits(1), bits(0)));
+
+        assertTrue(ScanChanges.between(previous, current, true, NAMES).isEmpty());
+    }
+
+    @Test
+    public void trackersAreNotComparedAcrossScanModes() {
+        ScanSnapshot previous = snapshot(1, 1000,
+                app("com.a", "Alpha", LOW, bits(1), bits(1), NONE),
+                app("com.b", "Bravo", LOW, bits(1), bits(1), bits(0)));
+        // Deep scan found more trackers in both; only com.b also gained a permission
+        ScanSnapshot current = snapshot(2, 2000,
+                app("com.a", "Alpha", HIGH, bits(1), bits(1), bits(0, 2)),
+                app("com.b", "Bravo", HIGH, bits(1, 2), bits(1, 2), bits(0, 3)));
+
+        ScanChanges changes = ScanChanges.between(previous, current, false, NAMES);
+        ScanChanges.AppChange change = single(changes);
+        assertEquals("com.b", change.getPackageName());
+        assertEquals("Risk LOW → HIGH · Newly granted: P2", change.getDescription());
+    }
+
+    private static ScanChanges.AppChange single(ScanChanges changes) {
+        assertEquals(1, changes.getChanges().size());
+        return changes.getChanges().get(0);
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.privacyscope;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.privacyscope.TestApps.snapshot;
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link ScanHistory}'s file format on in-memory streams: appending and reloading,
+ * recovery from damaged files, and compaction.
+ */
+public class ScanHistoryTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // Midnight UTC, so day and week buckets are easy to place
+    private static final long NOW = 20000 * DAY;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        // Compaction buckets by local day
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void appendThenReload() throws IOException {
+        ScanHistory history = new ScanHistory();
+        ByteArrayOutputStream file = newFile();
+        file.write(history.add(snapshot(1000, app("com.a", 40, 2, 1), app("com.b", 70, 5, 3))));
+        // com.a is unchanged and com.b is removed
+        file.write(history.add(snapshot(2000, app("com.a", 40, 2, 1), app("com.c", 10, 0, 0))));
+        file.write(history.add(snapshot(3000, app("com.a", 55, 3, 1), app("com.c", 10, 0, 0))));
+        assertNull(history.add(snapshot(3000, app("com.a", 90, 3, 1))));
+
+        ScanHistory reloaded = new ScanHistory();
+        byte[] bytes = file.toByteArray();
+        assertEquals(bytes.length, reloaded.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertSameHistory(history, reloaded, "com.a", "com.b", "com.c");
+
+        ScanHistory.AppTrend a = reloaded.getAppTrend("com.a", 0, Long.MAX_VALUE);
+        assertEquals(2, a.size());
+        assertEquals(1000, a.getTime(0));
+        assertEquals(40, a.getRiskScore(0));
+        assertEquals(3000, a.getTime(1));
+        assertEquals(55, a.getRiskScore(1));
+        assertEquals(3, a.getGrantedCount(1));
+        assertEquals(1, a.getTrackerCount(1));
+
+        ScanHistory.AppTrend b = reloaded.getAppTrend("com.b", 0, Long.MAX_VALUE);
+        assertEquals(2, b.size());
+        assertTrue(b.isInstalled(0));
+        assertFalse(b.isInstalled(1));
+
+        ScanHistory.DeviceTrend device = reloaded.getDeviceTrend(0, Long.MAX_VALUE);
+        assertEquals(3, device.size());
+        assertEquals(1, device.getHighRiskCount(0));
+        assertEquals(55f, device.getAverageScore(0), 0.001);
+        assertEquals(0, device.getHighRiskCount(1));
+    }
+
+    @Test
+    public void trendStartsWithThePointInEffect() throws IOException {
+        ScanHistory history = new ScanHistory();
+        history.add(snapshot(1000, app("com.a", 40, 2, 1)));
+        history.add(snapshot(2000, app("com.a", 50, 2, 1)));
+        history.add(snapshot(3000, app("com.a", 60, 2, 1)));
+
+        ScanHistory.AppTrend trend = history.getAppTrend("com.a", 2500, 3000);
+        assertEquals(2, trend.size());
+        assertEquals(2000, trend.getTime(0));
+        assertEquals(3000, trend.getTime(1));
+        assertEquals(0, history.getAppTrend("com.a", 0, 500).size());
+        assertEquals(0, history.getAppTrend("com.missing", 0, Long.MAX_VALUE).size());
+        assertEquals(2, history.getDeviceTrend(1500, 3000).size());
+    }
+
+    @Test
+    public void partialTrailingRecordIsDropped() throws IOException {
+        ScanHistory history = new ScanHistory();
+        ByteArrayOutputStream file = newFile();
+        file.write(history.add(snapshot(1000, app("com.a", 40, 2, 1))));
+        file.write(history.add(snapshot(2000, app("com.a", 50, 2, 1), app("com.b", 20, 1, 0))));
+        int validLength = file.size();
+        byte[] last = history.add(snapshot(3000, app("com.a", 60, 2, 1), app("com.b", 20, 1, 0)));
+        // The process died halfway through the append
+        file.write(last, 0, last.length / 2);
+
+        ScanHistory reloaded = new ScanHistory();
+        byte[] bytes = file.toByteArray();
+        assertEquals(validLength, reloaded.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(2, reloaded.getDeviceTrend(0, Long.MAX_VALUE).size());
+        assertEquals(50, lastScore(reloaded, "com.a"));
+
+        // After truncating, the next append continues the file
+        ByteArrayOutputStream truncated = new ByteArrayOutputStream();
+        truncated.write(bytes, 0, validLength);
+        truncated.write(reloaded.add(snapshot(4000, app("com.a", 70, 2, 1))));
+        ScanHistory again = new ScanHistory();
+        bytes = truncated.toByteArray();
+        assertEquals(bytes.length, again.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertSameHistory(reloaded, again, "com.a", "com.b");
+        assertEquals(70, lastScore(again, "com.a"));
+        assertFalse(again.getAppTrend("com.b", 0, Long.MAX_VALUE).isInstalled(1));
+    }
+
+    @Test
+    public void outOfOrderRecordIsDropped() throws IOException {
+        ScanHistory history = new ScanHistory();
+        ByteArrayOutputStream file = newFile();
+        file.write(history.add(snapshot(2000, app("com.a", 40, 2, 1))));
+        int validLength = file.size();
+        // A record from another history, older than the one before it
+        file.write(new ScanHistory().add(snapshot(1000, app("com.a", 90, 2, 1))));
+        file.write(history.add(snapshot(3000, app("com.a", 50, 2, 1))));
+
+        ScanHistory reloaded = new ScanHistory();
+        byte[] bytes = file.toByteArray();
+        assertEquals(validLength, reloaded.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(1, reloaded.getDeviceTrend(0, Long.MAX_VALUE).size());
+        assertEquals(40, lastScore(reloaded, "com.a"));
+    }
+
+    @Test
+    public void badHeaderIsRejected() {
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        assertEquals(-1, new ScanHistory().read(new ByteArrayInputStream(garbage), garbage.length));
+        // A header cut short keeps nothing
+        byte[] shortHeader = Arrays.copyOf(newFile().toByteArray(), 6);
+        assertEquals(0, new ScanHistory().read(new ByteArrayInputStream(shortHeader), shortHeader.length));
+    }
+
+    @Test
+    public void compactionKeepsLastScanPerDayAndWeek() throws IOException {
+        ScanHistory history = new ScanHistory();
+        // Three scans in one week over a year ago; com.b comes and goes within that week
+        long week = (NOW - 400 * DAY) / (7 * DAY) * (7 * DAY);
+        history.add(snapshot(week + DAY, app("com.a", 10, 1, 0), app("com.b", 30, 1, 1)));
+        history.add(snapshot(week + 3 * DAY, app("com.a", 20, 1, 0)));
+        history.add(snapshot(week + 5 * DAY, app("com.a", 20, 1, 0)));
+        // Three scans in one day, 40 days ago
+        long day = NOW - 40 * DAY;
+        history.add(snapshot(day + HOUR, app("com.a", 30, 1, 0)));
+        history.add(snapshot(day + 5 * HOUR, app("com.a", 40, 1, 0)));
+        history.add(snapshot(day + 20 * HOUR, app("com.a", 40, 2, 0), app("com.c", 65, 1, 0)));
+        // Recent scans are all kept
+        history.add(snapshot(NOW - 2 * DAY, app("com.a", 45, 2, 0), app("com.c", 65, 1, 0)));
+        history.add(snapshot(NOW - DAY, app("com.a", 50, 2, 0), app("com.c", 65, 1, 0)));
+
+        assertTrue(history.compact(NOW));
+        assertFalse(history.compact(NOW));
+
+        ScanHistory.DeviceTrend device = history.getDeviceTrend(0, Long.MAX_VALUE);
+        long[] expectedTimes = {week + 5 * DAY, day + 20 * HOUR, NOW - 2 * DAY, NOW - DAY};
+        assertEquals(expectedTimes.length, device.size());
+        for (int i = 0; i < expectedTimes.length; i++) {
+            assertEquals(expectedTimes[i], device.getTime(i));
+        }
+        assertEquals(2, device.getAppCount(1));
+        assertEquals(1, device.getHighRiskCount(1));
+
+        // Each change moves to the scan ending its bucket, and the bucket's latest value wins
+        ScanHistory.AppTrend a = history.getAppTrend("com.a", 0, Long.MAX_VALUE);
+        assertEquals(4, a.size());
+        assertEquals(week + 5 * DAY, a.getTime(0));
+        assertEquals(20, a.getRiskScore(0));
+        assertEquals(day + 20 * HOUR, a.getTime(1));
+        assertEquals(40, a.getRiskScore(1));
+        assertEquals(2, a.getGrantedCount(1));
+        assertEquals(45, a.getRiskScore(2));
+        assertEquals(50, a.getRiskScore(3));
+        // Installed and removed between two kept scans
+        assertEquals(0, history.getAppTrend("com.b", 0, Long.MAX_VALUE).size());
+        ScanHistory.AppTrend c = history.getAppTrend("com.c", 0, Long.MAX_VALUE);
+        assertEquals(1, c.size());
+        assertEquals(day + 20 * HOUR, c.getTime(0));
+
+        // The rewritten file loads the same history, and appends after it use the new name ids
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        history.writeTo(file);
+        file.write(history.add(snapshot(NOW, app("com.c", 15, 0, 0), app("com.d", 5, 0, 0))));
+        ScanHistory reloaded = new ScanHistory();
+        byte[] bytes = file.toByteArray();
+        assertEquals(bytes.length, reloaded.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertSameHistory(history, reloaded, "com.a", "com.b", "com.c", "com.d");
+        assertFalse(reloaded.getAppTrend("com.a", 0, Long.MAX_VALUE).isInstalled(4));
+        assertEquals(15, lastScore(reloaded, "com.c"));
+    }
+
+    private static ByteArrayOutputStream newFile() {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try {
+            ScanHistory.writeHeader(new DataOutputStream(file));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return file;
+    }
+
+    private static int lastScore(ScanHistory history, String packageName) {
+        ScanHistory.AppTrend trend = history.getAppTrend(packageName, 0, Long.MAX_VALUE);
+        return trend.getRiskScore(trend.size() - 1);
+    }
+
+    private static void assertSameHistory(ScanHistory expected, ScanHistory actual, String... packageNames) {
+        ScanHistory.DeviceTrend e = expected.getDeviceTrend(0, Long.MAX_VALUE);
+        ScanHistory.DeviceTrend a = actual.getDeviceTrend(0, Long.MAX_VALUE);
+        assertEquals(e.size(), a.size());
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.getTime(i), a.getTime(i));
+            assertEquals(e.getAppCount(i), a.getAppCount(i));
+            assertEquals(e.getHighRiskCount(i), a.getHighRiskCount(i));
+            assertEquals(e.getAverageScore(i), a.getAverageScore(i), 0.001);
+        }
+        for (String packageName : packageNames) {
+            ScanHistory.AppTrend et = expected.getAppTrend(packageName, 0, Long.MAX_VALUE);
+            ScanHistory.AppTrend at = actual.getAppTrend(packageName, 0, Long.MAX_VALUE);
+            assertEquals(packageName, et.size(), at.size());
+            for (int i = 0; i < et.size(); i++) {
+                assertEquals(packageName, et.getTime(i), at.getTime(i));
+                assertEquals(packageName, et.isInstalled(i), at.isInstalled(i));
+                assertEquals(packageName, et.getRiskScore(i), at.getRiskScore(i));
+                assertEquals(packageName, et.getGrantedCount(i), at.getGrantedCount(i));
+                assertEquals(packageName, et.getTrackerCount(i), at.getTrackerCount(i));
+            }
+        }
+    }
+
+    // Requests and grants permissions 0 to granted - 1, and has trackers 0 to trackers - 1
+    private static AppSummary app(String packageName, int score, int granted, int trackers) {
+        return TestApps.app(packageName, packageName, score,
+                TestApps.firstBits(granted), TestApps.firstBits(granted), TestApps.firstBits(trackers));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.privacyscope;
+
+import java.util.Arrays;
+
+/**
+ * Hand-built apps for the tests, made through the constructor the scan cache restores them
+ * with, so no PackageManager is needed. The level always follows the score.
+ */
+final class TestApps {
+
+    private TestApps() {}
+
+    static AppSummary app(String packageName, String appName, int score) {
+        return app(packageName, appName, score, Bits.EMPTY, Bits.EMPTY, Bits.EMPTY);
+    }
+
+    static AppSummary app(String packageName, String appName, int score,
+                          long[] permissionBits, long[] grantedBits, long[] trackerBits) {
+        return new AppSummary(packageName, 10000, appName, 1, 0, 0, score, RiskScorer.levelOf(score),
+                permissionBits, grantedBits, trackerBits);
+    }
+
+    static long[] bits(int... ids) {
+        Bits.Builder builder = new Bits.Builder();
+        for (int id : ids) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    /** A bitset of ids 0 to {@code count - 1}. */
+    static long[] firstBits(int count) {
+        Bits.Builder builder = new Bits.Builder();
+        for (int id = 0; id < count; id++) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    /** A full snapshot versioned by its scan time. */
+    static ScanSnapshot snapshot(long time, AppSummary... apps) {
+        return new ScanSnapshot(time, time, Arrays.asList(apps));
+    }
+
+    static ScanSnapshot snapshot(long version, long time, AppSummary... apps) {
+        return new ScanSnapshot(version, time, Arrays.asList(apps));
+    }
+}